@@ -0,0 +1,118 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/* =====================================================================================
+// JMH benchmarks of the scheduling algorithms in SchedulingAlgorithms (FCFS, RR, SJF, SRTF,
+//   and CFS and MLFQ with their default parameters; CFS also with every nice value mixed
+//   in, as CFSWeighted, since its virtual runtimes only differ from plain run time then)
+// Every benchmark runs one algorithm over a whole workload of n processes, so the score is
+//   workloads per second; the workload is generated once per trial from a fixed seed.
+// load is the ratio of the total burst time to the span the arrivals are spread over:
+//   below 1 the CPU is often idle and the ready queue stays short, above 1 the queue keeps
+//   growing, which is where the shortest-first heaps do the most work.
+// Bursts are drawn from [250, 5000), as in the simulator's own epochs; with the 64-bit clock
+//   the arrivals of the biggest workloads simply spread past 2^31 ticks.
+// Build and run with the jmh profile (add -prof gc for the allocation rate):
+//   mvn -P jmh package
+//   java -jar target/benchmarks.jar -prof gc
+   ===================================================================================== */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SchedulerBenchmark {
+    static final int minBurst = 250, maxBurst = 5000;   // burst times are in [minBurst, maxBurst)
+    static final long seed = 42;                        // same workload for every benchmark
+
+    @State(Scope.Thread)
+    public static class Workload {
+        @Param({"1000", "100000", "10000000"})
+        int n;              // number of processes
+
+        @Param({"0.5", "0.9", "2.0"})
+        double load;        // total burst time / arrival span
+
+        ProcessTable table;         // the workload, built once per trial
+        ProcessTable.State state;   // reset before every run
+        int [] nice;                // nice value of each row, from -20 to 19 in turn
+
+        @Setup(Level.Trial)
+        public void setup(){
+            double meanBurst = (minBurst+maxBurst-1)/2.0;
+            long maxArrival = (long)Math.max(1, n*meanBurst/load);
+            table = SchedulingAlgorithms.makeNewProcess(n, minBurst, maxBurst, maxArrival, seed);
+            state = table.newState();
+            nice = new int[n];
+            for(int i = 0; i < n; i++) nice[i] = i%40-20;
+        }
+
+        // Post: returns the state, ready for a new run (resetting is part of the measured work)
+        ProcessTable.State fresh(){
+            state.reset();
+            return state;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Quantum {
+        @Param({"100", "250", "1000"})
+        long quantum;       // time quantum of RR (the simulator's own quanta)
+    }
+
+    @Benchmark
+    public double [] FCFS(Workload w){
+        return SchedulingAlgorithms.FCFS(w.table, w.fresh());
+    }
+
+    @Benchmark
+    public double [] RR(Workload w, Quantum q){
+        return SchedulingAlgorithms.RR(w.table, w.fresh(), q.quantum);
+    }
+
+    @Benchmark
+    public double [] SJF(Workload w){
+        return SchedulingAlgorithms.SJF(w.table, w.fresh());
+    }
+
+    @Benchmark
+    public double [] SRTF(Workload w){
+        return SchedulingAlgorithms.SRTF(w.table, w.fresh());
+    }
+
+    @Benchmark
+    public double [] CFS(Workload w){
+        return SchedulingAlgorithms.CFS(w.table, w.fresh(), SchedulingAlgorithms.CFSScheduler.latencyDefault,
+                                        SchedulingAlgorithms.CFSScheduler.granularityDefault);
+    }
+
+    @Benchmark
+    public double [] CFSWeighted(Workload w){
+        return Simulator.run(new SchedulingAlgorithms.CFSScheduler(SchedulingAlgorithms.CFSScheduler.latencyDefault,
+                                                                   SchedulingAlgorithms.CFSScheduler.granularityDefault),
+                             ProcessStream.withPriorities(w.table.stream(), w.nice), w.fresh(), new RunStats()).toArray();
+    }
+
+    @Benchmark
+    public double [] MLFQ(Workload w){
+        return SchedulingAlgorithms.MLFQ(w.table, w.fresh(), SchedulingAlgorithms.MLFQScheduler.levelsDefault,
+                                         SchedulingAlgorithms.MLFQScheduler.quantumDefault,
+                                         SchedulingAlgorithms.MLFQScheduler.ageDefault);
+    }
+}
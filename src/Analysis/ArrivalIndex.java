@@ -0,0 +1,77 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+
+/* =====================================================================================
+// ArrivalIndex holds the processes of a workload in the order in which they arrive
+// It is built once per workload (arrivals are known up front) and never changes after that,
+//   so every algorithm run on the same workload can share it, even from different threads.
+// An algorithm walks it with a plain int cursor: pid[a] is the a-th process to arrive (its
+//   row in the ProcessTable) and time[a] is its arrival time, so getting the next arrival
+//   is O(1) and allocates nothing.
+// Processes that arrive at the same time are ordered by row.
+   ===================================================================================== */
+public class ArrivalIndex {
+    final int [] pid;   // process rows in order of arrival
+    final long [] time; // arrival time of each of those processes
+
+/* =====================================================================================
+// Pre:  passed the arrival times of the processes (at[i] >= 0 is the arrival of row i)
+// Post: builds the index with one entry per process
+   ===================================================================================== */
+    public ArrivalIndex(long [] at){
+        pid = new int[at.length];
+        time = new long[at.length];
+        long latest = 0;
+        for(long t: at) latest = Math.max(latest, t);
+        if(latest <= Integer.MAX_VALUE){
+            // Sort (arrival time, row) pairs packed into a single long:
+            //   the time in the high half, the row in the low half
+            long [] keys = new long[at.length];
+            for(int i=0; i<at.length; i++) keys[i] = (at[i] << 32) | i;
+            Arrays.sort(keys);
+            for(int a=0; a<keys.length; a++) pid[a] = (int)keys[a];
+        }else{
+            // the times do not fit in half a long: sort the rows by time (stably, so rows
+            //   with the same time stay in order)
+            for(int i=0; i<at.length; i++) pid[i] = i;
+            sortRows(pid, at);
+        }
+        for(int a=0; a<pid.length; a++) time[a] = at[pid[a]];
+    }
+
+    public int size(){ return pid.length; }     // number of processes
+    public int pid(int a){ return pid[a]; }     // row of the a-th process to arrive
+    public long time(int a){ return time[a]; }  // arrival time of the a-th process to arrive
+
+    // Post: rows is sorted by at[row], rows with the same time keeping their order
+    //         (a bottom-up merge sort)
+    static void sortRows(int [] rows, long [] at){
+        int [] from = rows, to = new int[rows.length];
+        for(int width=1; width<rows.length; width*=2){
+            for(int lo=0; lo<rows.length; lo+=2*width){
+                int mid = Math.min(lo+width, rows.length), hi = Math.min(lo+2*width, rows.length);
+                int i = lo, j = mid, k = lo;
+                while(i < mid && j < hi) to[k++] = at[from[j]] < at[from[i]] ? from[j++] : from[i++];
+                while(i < mid) to[k++] = from[i++];
+                while(j < hi) to[k++] = from[j++];
+            }
+            int [] t = from; from = to; to = t;
+        }
+        if(from != rows) System.arraycopy(from, 0, rows, 0, rows.length);
+    }
+}
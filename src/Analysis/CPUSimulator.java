@@ -15,145 +15,641 @@ limitations under the License.
 */
 package Analysis;
 import static Analysis.SchedulingAlgorithms.*; // import all the methods from SchedulingAlgorithms
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /* =====================================================================================
 // CPU Simulator for analyzing the scheduling algorithms
    ===================================================================================== */
 public class CPUSimulator {
     public static boolean demo = false; //True iff doing a demo (should choose small N for analyzeAll)
+    public static int threads = Runtime.getRuntime().availableProcessors(); //Worker threads for analyzeAll
+    public static long seed = new SplittableRandom().nextLong(); //Root seed every epoch's seed is split from
+    public static double meanGap = 3000; //Mean ticks between arrivals in streaming mode
+    public static String arrivals = "poisson"; //How processes arrive in streaming mode (see WorkloadGenerator.of)
+    public static String bursts = "uniform:250:5000"; //How burst times are distributed in streaming mode
+    public static String io = "none"; //Which processes wait for I/O in streaming mode, and for how long
+    public static int cpus = 1; //Simulated CPUs every algorithm runs on
+    public static String balance = "global"; //How processes are shared between CPUs (see MultiCoreSimulator)
+    public static SwitchCost switchCost = SwitchCost.NONE; //What a context switch costs the CPU
+    public static long window = 100000; //Ticks of simulated time the online metrics cover
+    public static long every = 10000; //Ticks of simulated time between online reports
+    public static double ci = 0; //Relative half width every 95% confidence interval must reach, 0 to run a fixed number of epochs
+    public static double budget = 0; //Seconds the epochs may take when the interval decides (0 for no limit)
+    static final int minEpochs = 3; //Fewest epochs an interval is trusted from
+    public static Checkpoint checkpoint = null; //Where the progress of the epochs is kept, null for nowhere
+    public static ResultCache cache = null; //Where the results of earlier runs are kept, null for nowhere
+    public static long tickNanos = 1000; //Nanoseconds a tick of work lasts when the policies run real tasks
+    public static String events = null; //Directory to record the events of every run in, null to not record them
+    public static long eventSample = 1; //Record the events of 1 in every eventSample processes
+    public static int eventBuffer = EventLog.defaultBuffer; //Bytes of ring buffer per event log
+    public static boolean offHeap = false; //Keep each epoch's processes off the Java heap (see ProcessStore)
+    
+    // Metrics whose confidence intervals decide when enough epochs have run (see metrics)
+    static final String [] metricNames = {"Avg Wait", "Avg Turnaround", "Wait p99", "Utilization"};
+    
+    // Policy configs of the algorithm variants compared (see SchedulingAlgorithms.scheduler)
+    public static String [] policies = {"FCFS", "RR:100", "RR:250", "RR:1000", "SJF", "SRTF", "CFS", "MLFQ"};
+    public static String [] demoPolicies = {"FCFS", "RR:2", "RR:5", "RR:10", "SJF", "SRTF", "CFS:8:2", "MLFQ:3:2:20"};
     
     public static void main(String [] args) throws Exception{
-        if(demo) analyzeAll(1, 5);  // Analyze all the processes
-        else analyzeAll(1, 100000);
+        int epoch = -1; long N = demo ? 5 : 100000; // defaults (epochs below)
+        long replay = 0; boolean isReplay = false;  // seed of a single epoch to re-run
+        boolean stream = false;                     // generate processes as they arrive
+        String trace = null;                        // binary trace file to replay
+        String online = null;                       // where to read processes from as they come
+        String saveTo = null; boolean resume = false; // checkpoint file, and whether to carry on from it
+        double saveEvery = 30; boolean seedGiven = false; // seconds between checkpoints
+        String cacheDir = null; long cacheSize = 256; // result cache directory, and its size in MB
+        boolean real = false;                       // run real tasks as well as simulating
+        for(String arg: args){                      // options are of the form --name=value
+            String [] kv = arg.split("=", 2);
+            switch(kv[0]){
+                case "--epochs":  epoch = Integer.parseInt(kv[1]); break;
+                case "--n":       N = Long.parseLong(kv[1]); break;
+                case "--seed":    seed = Long.parseLong(kv[1]); seedGiven = true; break;
+                case "--threads": threads = Integer.parseInt(kv[1]); break;
+                case "--replay":  replay = Long.parseLong(kv[1]); isReplay = true; break;
+                case "--stream":  stream = true; break;
+                case "--gap":     meanGap = Double.parseDouble(kv[1]); break;
+                case "--arrivals": arrivals = kv[1]; stream = true; break;
+                case "--bursts":  bursts = kv[1]; stream = true; break;
+                case "--io":      io = kv[1]; stream = true; break;
+                case "--trace":   trace = kv[1]; break;
+                case "--policies": policies = demoPolicies = kv[1].split(","); break;
+                case "--cpus":    cpus = Integer.parseInt(kv[1]); break;
+                case "--balance": balance = kv[1]; break;
+                case "--switch":  switchCost = SwitchCost.parse(kv[1]); break;
+                case "--online":  online = kv[1]; break;
+                case "--window":  window = Long.parseLong(kv[1]); break;
+                case "--every":   every = Long.parseLong(kv[1]); break;
+                case "--ci":      ci = Double.parseDouble(kv[1]); break;
+                case "--budget":  budget = Double.parseDouble(kv[1]); break;
+                case "--checkpoint": saveTo = kv[1]; break;
+                case "--checkpoint-every": saveEvery = Double.parseDouble(kv[1]); break;
+                case "--resume":  resume = true; break;
+                case "--cache":   cacheDir = kv[1]; break;
+                case "--real":    real = true; break;
+                case "--offheap": offHeap = true; break;
+                case "--tick":    tickNanos = Long.parseLong(kv[1]); break;
+                case "--events":  events = kv[1]; break;
+                case "--events-sample": eventSample = Long.parseLong(kv[1]); break;
+                case "--events-buffer": eventBuffer = Math.toIntExact(Long.parseLong(kv[1]) << 20); break;
+                case "--cache-size": cacheSize = Long.parseLong(kv[1]); break;
+                default: throw new IllegalArgumentException("Unknown option: "+arg);
+            }
+        }
+        for(String config: configs()) scheduler(config);  // fail early on a bad config
+        MultiCoreSimulator.checkMode(balance);
+        WorkloadGenerator.of(0, meanGap, arrivals, bursts, io, 0);   // and on a bad workload
+        if(cpus <= 0) throw new IllegalArgumentException("Number of CPUs must be > 0");
+        if(epoch < 0) epoch = ci > 0 ? 100 : 1; // with --ci, --epochs is the most to run
+        if(resume && saveTo == null) throw new IllegalArgumentException("--resume needs --checkpoint");
+        if(saveTo != null){
+            if(online != null || trace != null || isReplay || ci > 0 || real)
+                throw new IllegalArgumentException("Checkpoints only work with a fixed number of epochs");
+            Path path = Paths.get(saveTo);
+            String run = "epochs="+epoch+" n="+N+" stream="+stream+" gap="+meanGap+" arrivals="+arrivals+" bursts="+bursts
+                         +" io="+io+" policies="+String.join(",", configs())
+                         +" cpus="+cpus+" balance="+balance+" switch="+switchCost+" demo="+demo;
+            if(resume && Files.exists(path)){
+                checkpoint = Checkpoint.load(path, run, saveEvery);
+                if(seedGiven && seed != checkpoint.seed())
+                    throw new IllegalArgumentException("--seed differs from the seed of "+path);
+                seed = checkpoint.seed();
+                System.out.println("Resuming from "+path+": "+checkpoint.done()+" of "+epoch+" epochs done");
+            }else checkpoint = new Checkpoint(path, run, seed, saveEvery);
+        }
+        if(events != null) Files.createDirectories(Paths.get(events));
+        if(cacheDir != null) cache = new ResultCache(Paths.get(cacheDir), cacheSize << 20);
+        if(real) analyzeReal(Math.toIntExact(N));  // simulated against real execution
+        else if(online != null) analyzeOnline(online);  // shadow a live stream of jobs
+        else if(trace != null) analyzeTrace(trace);   // replay a recorded workload
+        else if(ci > 0 && !isReplay) analyzeAdaptive(epoch, N, stream);  // as many epochs as it takes
+        else if(stream) analyzeStream(epoch, N);   // constant-memory run of any number of processes
+        else if(isReplay) printStats(runEpoch(0, replay, N, null)); // re-run one epoch exactly
+        else analyzeAll(epoch, N);  // Analyze all the processes
+        if(cache != null) System.out.println("\nResult cache: "+cache.hits()+" hits, "+cache.misses()+" misses ("
+                                             +(cache.bytes() >> 10)+" KiB in "+cacheDir+")");
     }
     
 /* =====================================================================================
 // Pre:  passed number of epochs > 0 and N > 0
 // Post: returns nothing
+//       the epochs, and the algorithm variants within each epoch, run in parallel on a
+//       pool of CPUSimulator.threads workers (a demo runs everything one after another so
+//       that the debugging output stays readable)
+   ===================================================================================== */
+    public static void analyzeAll(int epoch, long N){
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{ analyzeAll(epoch, N, pool); }
+        finally{ pool.shutdown(); }
+    }
+    
+/* =====================================================================================
+// Pre:  passed number of epochs > 0, N > 0 and the pool to run the algorithms on
+// Post: returns nothing
+//       every epoch gets its own seed, split off the root seed CPUSimulator.seed, and the
+//         per-epoch statistics are merged with a parallel reduction
+//       with a CPUSimulator.checkpoint, the epochs it has done are skipped and every epoch
+//         finished is saved in it
+   ===================================================================================== */
+    public static void analyzeAll(int epoch, long N, ForkJoinPool pool){
+        System.out.println("Seed: "+seed);
+        long [] seeds = epochSeeds(seed, epoch);
+        
+        RunStats [] result = null;  // Aggregate statistics for each algorithm
+        if(demo){
+            for(int e=0; e<epoch; e++){
+                if(isDone(e)) continue;
+                RunStats [] r = saved(e, runEpoch(e+1, seeds[e], N, null));
+                result = result == null ? r : merge(result, r);
+            }
+        }else{
+            result = invoke(pool, () -> IntStream.range(0, epoch).parallel()
+                                        .filter(e -> !isDone(e))
+                                        .mapToObj(e -> saved(e, runEpoch(e+1, seeds[e], N, pool)))
+                                        .reduce(CPUSimulator::merge).orElse(null));
+        }
+        printStats(finished(result));
+    }
+    
+    // Post: returns true iff the checkpoint has epoch e done already
+    static boolean isDone(int e){ return checkpoint != null && checkpoint.isDone(e); }
+    
+    // Pre: passed an epoch and the statistics of its variants
+    // Post: saves them in the checkpoint, if there is one; returns them
+    static RunStats [] saved(int e, RunStats [] r){
+        if(checkpoint != null) checkpoint.add(e, r);
+        return r;
+    }
+    
+    // Pre: passed the statistics of the epochs run (null if none were)
+    // Post: returns the statistics of every epoch, with those done before resuming, and
+    //         writes the final checkpoint
+    static RunStats [] finished(RunStats [] result){
+        if(checkpoint == null) return result;
+        try{
+            checkpoint.write();
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        return checkpoint.result();
+    }
+    
+/* =====================================================================================
+// Pre:  passed the most epochs to run > 0, N > 0 and whether to generate the processes as
+//         they arrive (as analyzeStream does) rather than store them (as analyzeAll does)
+// Post: returns nothing
+//       runs epochs until the 95% confidence interval of every metric (see metrics) of every
+//         variant is within CPUSimulator.ci of its mean, the epochs run out or they have
+//         taken CPUSimulator.budget seconds, and prints the intervals with the statistics
+//       epochs run in parallel, a batch of CPUSimulator.threads at a time, but are folded in
+//         one at a time in order, checking the intervals after each, so the same seed runs
+//         the same epochs whatever the thread count (unless the time runs out)
    ===================================================================================== */
-    public static void analyzeAll(int epoch, int N){
-        // Initialize the double arrays for results for each algorithm
-        double [] result = {0,0,0}, result2={0,0,0}, result3={0,0,0}, result4={0,0,0}, result5={0,0,0}, result6={0,0,0}, curr={0,0,0};
+    public static void analyzeAdaptive(int epoch, long N, boolean stream){
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{ analyzeAdaptive(epoch, N, stream, pool); }
+        finally{ pool.shutdown(); }
+    }
+    
+    // Same as above, on the given pool
+    public static void analyzeAdaptive(int epoch, long N, boolean stream, ForkJoinPool pool){
+        System.out.println("Seed: "+seed);
+        long [] seeds = epochSeeds(seed, epoch);
+        long deadline = budget > 0 ? System.nanoTime()+(long)(budget*1e9) : Long.MAX_VALUE;
+        Welford [][] est = new Welford[configs().length][metricNames.length]; // per variant and metric
+        for(Welford [] row: est) for(int m=0; m<row.length; m++) row[m] = new Welford();
         
-        for(int e=1; e<= epoch; e++){                       // run for the specified number of epochs
-            System.out.println("Making Processes...");      // output for keeping track of the program
-            int [][][] p1;  // for new set of processes
-            if(demo) p1 = makeNewProcess(N, 1, 15, 10, 6);           // demo
-            else p1 = makeNewProcess(N, 250, 5000, 50000, 6);        // no demo
-            
-            //===============================DEBUGGING CODE=========================//
-            if(demo){
-                System.out.println("Process List: ");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                for(int r=0; r<N; r++){
-                    for(int c: debugCols) System.out.print(p1[0][c][r]+"\t");
-                    System.out.println("");
+        RunStats [] result = null;  // Aggregate statistics for each algorithm
+        int done = 0;               // epochs folded in
+        String why = "epoch limit reached";
+        batches:
+        while(done < epoch){
+            int from = done, to = Math.min(epoch, done+(demo ? 1 : threads));
+            RunStats [][] batch = invoke(pool, () -> IntStream.range(from, to).parallel()
+                    .mapToObj(e -> stream ? streamEpoch(e+1, seeds[e], N)
+                                          : runEpoch(e+1, seeds[e], N, demo ? null : pool))
+                    .toArray(RunStats[][]::new));
+            for(RunStats [] r: batch){
+                for(int a=0; a<r.length; a++){
+                    double [] m = metrics(r[a]);
+                    for(int i=0; i<m.length; i++) est[a][i].add(m[i]);
                 }
+                result = result == null ? r : merge(result, r);
+                done++;
+                if(converged(est)){ why = "confidence intervals converged"; break batches; }
             }
-            //======================================================================//
-                        
-            if(demo){
-                System.out.println("\nFCFS");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                curr = FCFS(p1[0]);                     // run the FCFS algorithm
-                for(int i=0; i<3; i++) result[i] += curr[i];    // add to the FCFS aggregate results
-                
-                System.out.println("\nRR (2)");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                curr = RR(p1[1], 2);                  // run the RR algorithm with time quantum size 100
-                for(int i=0; i<3; i++) result2[i] += curr[i];   // add to the aggregate results
-                
-                System.out.println("\nRR (5)");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                curr = RR(p1[2], 5);                  // run the RR algorithm with time quantum size 250
-                for(int i=0; i<3; i++) result3[i] += curr[i];   // add to the aggregate results
-                
-                System.out.println("\nRR (10)");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                curr = RR(p1[3], 10);                 // run the RR algorithm with time quantum size 1000
-                for(int i=0; i<3; i++) result4[i] += curr[i];   // add to the aggregate results
-                
-                System.out.println("\nSJF");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                curr = SJF(p1[4]);                      // run the SJF algorithm
-                for(int i=0; i<3; i++) result5[i] += curr[i];   // add to the aggregate results
-                
-                System.out.println("\nSRTF");
-                for(int c: debugCols) System.out.print(columns[c]+"\t");
-                System.out.println("");
-                curr = SRTF(p1[5]);                     // run the SRTF algorithm
-                for(int i=0; i<3; i++) result6[i] += curr[i];   // add to the aggregate results
-            }else{
-                System.out.println("Epoch "+e+"...");
-                System.out.println("FCFS");
-                curr = FCFS(p1[0]);                     // run the FCFS algorithm
-                for(int i=0; i<3; i++) result[i] += curr[i];    // add to the FCFS aggregate results
-                System.out.println("RR (100)");
-                curr = RR(p1[1], 100);                  // run the RR algorithm with time quantum size 100
-                for(int i=0; i<3; i++) result2[i] += curr[i];   // add to the aggregate results
-                System.out.println("RR (250)");
-                curr = RR(p1[2], 250);                  // run the RR algorithm with time quantum size 250
-                for(int i=0; i<3; i++) result3[i] += curr[i];   // add to the aggregate results
-                System.out.println("RR (1000)");
-                curr = RR(p1[3], 1000);                 // run the RR algorithm with time quantum size 1000
-                for(int i=0; i<3; i++) result4[i] += curr[i];   // add to the aggregate results
-                System.out.println("SJF");
-                curr = SJF(p1[4]);                      // run the SJF algorithm
-                for(int i=0; i<3; i++) result5[i] += curr[i];   // add to the aggregate results
-                System.out.println("SRTF");
-                curr = SRTF(p1[5]);                     // run the SRTF algorithm
-                for(int i=0; i<3; i++) result6[i] += curr[i];   // add to the aggregate results
+            if(System.nanoTime() >= deadline){ why = "time budget ran out"; break; }
+        }
+        System.out.println("Stopped after "+done+" epochs: "+why);
+        printStats(result);
+        printIntervals(est);
+    }
+    
+    // Pre: passed the statistics of one variant in one epoch
+    // Post: returns the values of metricNames for it
+    static double [] metrics(RunStats s){
+        double [] r = s.toArray();
+        return new double[]{ s.avgWait(), s.avgTat(), s.waitTimes().percentile(99), 1-(r[0]/(r[1]*s.cpus())) };
+    }
+    
+    // Post: returns true iff every interval has enough epochs and is narrow enough
+    static boolean converged(Welford [][] est){
+        for(Welford [] row: est){
+            for(Welford w: row) if(w.count() < minEpochs || w.relativeWidth() > ci) return false;
+        }
+        return true;
+    }
+    
+    // Post: prints the confidence interval of every metric of every variant
+    static void printIntervals(Welford [][] est){
+        System.out.println("\n95% confidence intervals over "+est[0][0].count()+" epochs (mean +/- half width, relative half width)");
+        for(int a=0; a<configs().length; a++){
+            StringBuilder line = new StringBuilder(label(a));
+            for(int i=0; i<metricNames.length; i++) line.append("\t").append(metricNames[i]).append(": ").append(est[a][i].interval());
+            System.out.println(line);
+        }
+    }
+    
+/* =====================================================================================
+// Pre:  passed number of epochs > 0 and N > 0
+// Post: returns nothing
+//       like analyzeAll, but every algorithm variant reads its processes from a
+//         WorkloadGenerator as they arrive (CPUSimulator.meanGap ticks apart on average,
+//         made as CPUSimulator.arrivals, bursts and io say) and folds them into a RunStats as
+//         they complete, so memory only depends on how many processes are waiting at once
+//         and N can be in the billions
+   ===================================================================================== */
+    public static void analyzeStream(int epoch, long N){
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{ analyzeStream(epoch, N, pool); }
+        finally{ pool.shutdown(); }
+    }
+    
+    // Same as above, on the given pool
+    public static void analyzeStream(int epoch, long N, ForkJoinPool pool){
+        System.out.println("Seed: "+seed);
+        long [] seeds = epochSeeds(seed, epoch);
+        RunStats [] result = invoke(pool, () -> IntStream.range(0, epoch).parallel()
+                                                .filter(e -> !isDone(e))
+                                                .mapToObj(e -> saved(e, streamEpoch(e+1, seeds[e], N)))
+                                                .reduce(CPUSimulator::merge).orElse(null));
+        printStats(finished(result));
+    }
+    
+/* =====================================================================================
+// Pre:  passed the epoch number (for output), its seed and N > 0; must be called from a
+//         ForkJoinPool worker
+// Post: returns the statistics of every variant, in the order of configs()
+//       every variant gets its own generator with the epoch's seed, so they all see the
+//         same processes without the processes being stored
+   ===================================================================================== */
+    static RunStats [] streamEpoch(int e, long epochSeed, long N){
+        System.out.println("Epoch "+e+" (seed "+epochSeed+")...");
+        String workload = arrivals+" n="+N+" gap="+meanGap+" burst="+bursts+" io="+io+" seed="+epochSeed;
+        return streamAll(() -> WorkloadGenerator.of(N, meanGap, arrivals, bursts, io, epochSeed), workload, e);
+    }
+    
+/* =====================================================================================
+// Pre:  passed the path of a binary trace file (see TraceFile)
+// Post: returns nothing
+//       replays the trace with every algorithm variant, in parallel, each reading the
+//         memory-mapped file through its own stream
+   ===================================================================================== */
+    public static void analyzeTrace(String path) throws Exception{
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try(TraceFile trace = new TraceFile(Paths.get(path))){
+            System.out.println("Trace: "+path+" ("+trace.size()+" processes)");
+            printStats(invoke(pool, () -> streamAll(trace::stream, null, 0)));
+        }finally{
+            pool.shutdown();
+        }
+    }
+    
+/* =====================================================================================
+// Pre:  passed N > 0
+// Post: returns nothing
+//       makes one epoch's processes (from the root seed, like the first epoch of a batch
+//         run), then for every policy simulates them on CPUSimulator.cpus CPUs and really
+//         runs them as CPU-bound tasks on a PolicyExecutor with that many worker threads,
+//         each submitted at its arrival time and spinning for its burst (a tick lasting
+//         CPUSimulator.tickNanos), and prints the two side by side
+//       the real times are measured, so they vary from run to run, and with fewer cores
+//         than CPUSimulator.cpus the workers share them
+   ===================================================================================== */
+    public static void analyzeReal(int N) throws InterruptedException{
+        long epochSeed = epochSeeds(seed, 1)[0];
+        ProcessTable t = makeNewProcess(N, 250, 5000, 50000, epochSeed);
+        PolicyExecutor.CpuTask spin = PolicyExecutor.spinner(tickNanos);
+        System.out.println("Real execution: "+N+" processes (seed "+epochSeed+"), "+cpus+" worker thread(s), "
+                           +tickNanos+" ns per tick");
+        for(int a=0; a<configs().length; a++){
+            RunStats sim = stream(a, t::stream, 1);
+            PolicyExecutor ex = new PolicyExecutor(scheduler(configs()[a]), cpus, tickNanos);
+            for(ProcessStream in = t.stream(); in.hasNext(); in.next()){
+                long due = ex.start+in.arrival()*tickNanos;     // submit each task when it arrives
+                for(long now; (now = System.nanoTime()) < due; ) LockSupport.parkNanos(due-now);
+                ex.submit(spin, in.burst(), in.priority());
             }
-            
+            ex.shutdown();
+            ex.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            printComparison(a, sim, ex.stats());
         }
+    }
+    
+    // Pre: passed an algorithm number and the statistics of its simulated and real runs
+    // Post: prints them side by side
+    static void printComparison(int alg, RunStats sim, RunStats real){
+        System.out.println("\n"+label(alg)+"\n");
+        System.out.println("\tSimulated\tReal");
+        RunStats [] both = {sim, real};
+        StringBuilder [] rows = new StringBuilder[7];
+        String [] names = {"Processes", "Avg Wait", "Avg Turnaround", "Max Wait", "Wait p99", "Throughput (per 1000 ticks)",
+                           "Utilization"};
+        for(int i=0; i<rows.length; i++) rows[i] = new StringBuilder(names[i]);
+        for(RunStats s: both){
+            double [] r = s.toArray();
+            rows[0].append('\t').append(s.count());
+            rows[1].append('\t').append(String.format("%.1f", s.avgWait()));
+            rows[2].append('\t').append(String.format("%.1f", s.avgTat()));
+            rows[3].append('\t').append(s.maxWait());
+            rows[4].append('\t').append(s.waitTimes().percentile(99));
+            rows[5].append('\t').append(String.format("%.3f", 1000*s.count()/Math.max(r[1], 1)));
+            rows[6].append('\t').append(String.format("%.3f", 1-(r[0]/(r[1]*s.cpus()))));
+        }
+        for(StringBuilder row: rows) System.out.println(row);
+    }
+    
+/* =====================================================================================
+// Pre:  passed where to read jobs from: "-" for stdin, "tcp:port" to take one connection on
+//         a local port, or the path of a file or named pipe
+// Post: returns nothing
+//       runs the first policy of configs() on the jobs as they are read (CSV lines, as
+//         CsvStream reads them), printing the throughput, utilization and waiting time
+//         percentiles of the last CPUSimulator.window ticks every CPUSimulator.every ticks of
+//         simulated time, then the statistics of the whole run once the input ends
+   ===================================================================================== */
+    public static void analyzeOnline(String source) throws IOException{
+        String config = configs()[0];
+        policies = demoPolicies = new String[]{config};     // the one policy run
+        WindowedStats stats = new WindowedStats(window, every, cpus, System.out);
+        try(BufferedReader in = open(source)){
+            System.out.println("Online: "+label(0)+", reading "+source);
+            CsvStream jobs = new CsvStream(in, source);
+            if(cpus > 1) MultiCoreSimulator.run(config, jobs, cpus, balance, switchCost, stats);
+            else Simulator.run(scheduler(config), jobs, null, stats, switchCost);
+        }catch(UncheckedIOException ex){
+            throw ex.getCause();
+        }
+        printStats(new RunStats[]{stats});
+    }
+    
+    // Pre: passed a source as for analyzeOnline; Post: returns a reader of its lines
+    static BufferedReader open(String source) throws IOException{
+        if(source.equals("-")) return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        if(source.startsWith("tcp:")){
+            int port = Integer.parseInt(source.substring(4));
+            try(ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())){
+                System.out.println("Waiting for a connection on port "+port+"...");
+                Socket client = server.accept();    // closed with the reader
+                return new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            }
+        }
+        return Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+    }
+    
+/* =====================================================================================
+// Pre:  passed a source of streams that all give the same processes, the description of
+//         the workload they give (null to not use the cache) and the epoch (0 for a trace,
+//         to name event logs); must be called from a ForkJoinPool worker
+// Post: returns the statistics of every variant, in the order of configs(), each run on its
+//         own stream from the source (or found in the cache)
+   ===================================================================================== */
+    static RunStats [] streamAll(Supplier<ProcessStream> source, String workload, int e){
+        RunStats [] stats = cached(workload);
+        List<ForkJoinTask<RunStats>> runs = new ArrayList<>();
+        for(int a=0; a<configs().length; a++){
+            final int alg = a;
+            if(stats[a] == null) runs.add(ForkJoinTask.adapt(() -> stored(workload, alg, stream(alg, source, e))));
+        }
+        ForkJoinTask.invokeAll(runs);
+        for(int a=0, r=0; a<configs().length; a++) if(stats[a] == null) stats[a] = runs.get(r++).join();
+        return stats;
+    }
+    
+    // Pre: passed an algorithm number, a source of streams of the processes and the epoch
+    // Post: returns its statistics, on CPUSimulator.cpus CPUs
+    static RunStats stream(int alg, Supplier<ProcessStream> source, int e){
+        return simulate(alg, source, null, e);
+    }
+    
+/* =====================================================================================
+// Pre:  passed an algorithm number, a source of streams of the processes, the state to write
+//         per-process results into (or null) and the epoch
+// Post: returns the statistics of the run, on CPUSimulator.cpus CPUs
+//       with CPUSimulator.events set, what happens is recorded in <policy>.<epoch>.events
+//         there (a partitioned run is then simulated in one event loop, so that all of its
+//         CPUs write to the one log)
+   ===================================================================================== */
+    static RunStats simulate(int alg, Supplier<ProcessStream> source, ProcessTable.State s, int e){
+        String config = configs()[alg];
+        Path file = events == null ? null : Paths.get(events, config.replace(':', '_')+"."+e+".events");
+        try(EventLog log = file == null ? null : new EventLog(file, cpus, config, eventSample, eventBuffer)){
+            if(cpus > 1 && log == null) return MultiCoreSimulator.run(config, source, cpus, balance, switchCost);
+            if(cpus > 1) return MultiCoreSimulator.run(config, source.get(), cpus, balance, switchCost, new RunStats(), log);
+            return Simulator.run(scheduler(config), source.get(), s, new RunStats(), switchCost, log);
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    // Pre: passed two arrays of statistics, one per variant; Post: folds b into a, returns a
+    static RunStats [] merge(RunStats [] a, RunStats [] b){
+        for(int i=0; i<a.length; i++) a[i].merge(b[i]);
+        return a;
+    }
+    
+    // Pre: passed a pool and some work; Post: runs the work in the pool and returns its result
+    static <T> T invoke(ForkJoinPool pool, Callable<T> work){
+        try{
+            return pool.submit(work).get();
+        }catch(ExecutionException ex){
+            throw new RuntimeException(ex.getCause());
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+    
+/* =====================================================================================
+// Pre:  passed a root seed and a number of epochs > 0
+// Post: returns one seed per epoch, split off the root seed
+//       the same root seed always gives the same epoch seeds, whatever the thread count
+   ===================================================================================== */
+    public static long [] epochSeeds(long root, int epoch){
+        SplittableRandom rand = new SplittableRandom(root);
+        long [] seeds = new long[epoch];
+        for(int e=0; e<epoch; e++) seeds[e] = rand.split().nextLong();
+        return seeds;
+    }
+    
+/* =====================================================================================
+// Pre:  passed the epoch number (for output), its seed, N > 0 and the pool to run the
+//         algorithm variants on (null runs them one after another)
+// Post: returns the statistics of every variant, in the order of configs()
+//       re-running with the same seed and N gives exactly the same results
+//       with CPUSimulator.offHeap, the processes are kept in a ProcessStore instead of a
+//         table, which gives the same results (N may then be over 2^31)
+   ===================================================================================== */
+    public static RunStats [] runEpoch(int e, long epochSeed, long N, ForkJoinPool pool){
+        if(!demo) System.out.println("Epoch "+e+" (seed "+epochSeed+")...");
+        String workload = demo ? null : "table n="+N+" burst=250..5000 arrival<50000 seed="+epochSeed;
+        RunStats [] have = cached(workload);
+        if(!Arrays.asList(have).contains(null)) return have;   // no need to make the table
+        if(offHeap && !demo){
+            ProcessStore store = ProcessStore.generate(N, 250, 5000, 50000, epochSeed);
+            return invoke(pool == null ? ForkJoinPool.commonPool() : pool, () -> streamAll(store::stream, workload, e));
+        }
+        ProcessTable t;  // for new set of processes, shared by every algorithm
+        if(demo) t = makeNewProcess(Math.toIntExact(N), 1, 15, 10, epochSeed);      // demo
+        else t = makeNewProcess(Math.toIntExact(N), 250, 5000, 50000, epochSeed);   // no demo
         
-        // Divide all aggregate numbers by the number of epochs to get the averages
-        for(int i=0; i<3; i++) result[i] /= epoch;
-        for(int i=0; i<3; i++) result2[i] /= epoch;
-        for(int i=0; i<3; i++) result3[i] /= epoch;
-        for(int i=0; i<3; i++) result4[i] /= epoch;
-        for(int i=0; i<3; i++) result5[i] /= epoch;
-        for(int i=0; i<3; i++) result6[i] /= epoch;
-        
-        
-        // Print out the results
-        System.out.println("\nFCFS\n");
-        System.out.println("Idle (ms): "+result[0]+"\tTotal (ms): "+result[1]);
-        System.out.println("Utilization: "+(1-(result[0]/result[1])));
-        System.out.println("Avg Wait: "+(result[2]));
-        
-        if(demo) System.out.println("\nRR (2)\n");
-        else System.out.println("\nRR (100)\n");
-        System.out.println("Idle (ms): "+result2[0]+"\tTotal (ms): "+result2[1]);
-        System.out.println("Utilization: "+(1-(result2[0]/result2[1])));
-        System.out.println("Avg Wait: "+(result2[2]));
-        
-        if(demo) System.out.println("\nRR (5)\n");
-        else System.out.println("\nRR (250)\n");
-        System.out.println("Idle (ms): "+result3[0]+"\tTotal (ms): "+result3[1]);
-        System.out.println("Utilization: "+(1-(result3[0]/result3[1])));
-        System.out.println("Avg Wait: "+(result3[2]));
-        
-        if(demo) System.out.println("\nRR (10)\n");
-        else System.out.println("\nRR (1000)\n");
-        System.out.println("Idle (ms): "+result4[0]+"\tTotal (ms): "+result4[1]);
-        System.out.println("Utilization: "+(1-(result4[0]/result4[1])));
-        System.out.println("Avg Wait: "+(result4[2]));
-        
-        System.out.println("\nSJF\n");
-        System.out.println("Idle (ms): "+result5[0]+"\tTotal (ms): "+result5[1]);
-        System.out.println("Utilization: "+(1-(result5[0]/result5[1])));
-        System.out.println("Avg Wait: "+(result5[2]));
+        //===============================DEBUGGING CODE=========================//
+        if(demo){
+            System.out.println("Process List: ");
+            System.out.println(debugHeader);
+            ProcessTable.State s = t.newState();
+            for(int r=0; r<N; r++) debugRow(t, s, r);
+        }
+        //======================================================================//
         
-        System.out.println("\nSRTF\n");
-        System.out.println("Idle (ms): "+result6[0]+"\tTotal (ms): "+result6[1]);
-        System.out.println("Utilization: "+(1-(result6[0]/result6[1])));
-        System.out.println("Avg Wait: "+(result6[2]));
+        return runAll(t, pool, have, workload, e);   // run every algorithm on the table
+    }
+    
+/* =====================================================================================
+// Pre:  passed the statistics of every variant
+// Post: prints them, averaged over the runs folded into each, with the p50 / p90 / p99 /
+//         p99.9 of the waiting, turnaround and response times
+//       the useful utilization leaves out the time spent on context switches
+   ===================================================================================== */
+    static void printStats(RunStats [] stats){
+        for(int a=0; a<configs().length; a++){
+            double [] r = stats[a].toArray();
+            System.out.println("\n"+label(a)+"\n");
+            System.out.println("Processes: "+stats[a].count());
+            System.out.println("Idle (ticks): "+r[0]+"\tTotal (ticks): "+r[1]);
+            System.out.println("Utilization: "+(1-(r[0]/(r[1]*stats[a].cpus()))));
+            if(stats[a].cpus() > 1){
+                StringBuilder perCpu = new StringBuilder();
+                for(int c=0; c<stats[a].cpus(); c++) perCpu.append(c == 0 ? "" : " / ").append(String.format("%.3f", stats[a].utilization(c)));
+                System.out.println("CPUs: "+stats[a].cpus()+" ("+balance+")\tMigrations: "+stats[a].migrations()
+                                   +"\tImbalance: "+stats[a].imbalance());
+                System.out.println("Per-CPU Utilization: "+perCpu);
+            }
+            System.out.println("Context Switches: "+stats[a].switches()+"\tSwitching (ticks): "+stats[a].avgOverhead()
+                               +"\tUseful Utilization: "+(1-((r[0]+stats[a].avgOverhead())/(r[1]*stats[a].cpus()))));
+            System.out.println("Avg Wait: "+r[2]+"\tMax Wait: "+stats[a].maxWait());
+            System.out.println("Avg Turnaround: "+stats[a].avgTat());
+            if(stats[a].avgBlocked() > 0) System.out.println("Avg Blocked (I/O, not waiting): "+stats[a].avgBlocked());
+            System.out.println("Wait p50/p90/p99/p99.9: "+stats[a].waitTimes().summary());
+            System.out.println("Turnaround p50/p90/p99/p99.9: "+stats[a].turnaroundTimes().summary());
+            System.out.println("Response p50/p90/p99/p99.9: "+stats[a].responseTimes().summary());
+        }
+    }
+    
+/* =====================================================================================
+// Pre:  passed a table of processes, the pool the caller is running in (null runs the
+//         variants one after another), the statistics of the variants already found in the
+//         cache (null for those to run), the description of the workload the table holds
+//         and the epoch
+// Post: returns the statistics of every variant, in the order of configs()
+//       the table is only read, and each variant writes into its own state, so the runs
+//         are independent and their results are only combined once all of them are done
+   ===================================================================================== */
+    static RunStats [] runAll(ProcessTable t, ForkJoinPool pool, RunStats [] have, String workload, int e){
+        RunStats [] curr = have.clone();
+        if(pool == null){
+            ProcessTable.State s = t.newState();    // one state, reset between runs
+            for(int a=0; a<configs().length; a++){
+                if(curr[a] != null) continue;
+                s.reset();
+                curr[a] = stored(workload, a, run(a, t, s, e));
+            }
+            return curr;
+        }
+        List<ForkJoinTask<RunStats>> runs = new ArrayList<>();
+        for(int a=0; a<configs().length; a++){
+            final int alg = a;
+            if(curr[a] == null) runs.add(ForkJoinTask.adapt(() -> stored(workload, alg, run(alg, t, t.newState(), e))));
+        }
+        if(ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(runs); // fork, then help while joining
+        else for(ForkJoinTask<RunStats> r: runs) pool.execute(r);
+        for(int a=0, r=0; a<configs().length; a++) if(curr[a] == null) curr[a] = runs.get(r++).join();
+        return curr;
     }
+    
+/* =====================================================================================
+// Pre:  passed the description of a workload (the generator, its parameters and seed), or
+//         null if its results are not to be cached
+// Post: returns the statistics of every variant on it found in CPUSimulator.cache, null for
+//         those not found (all null without a cache), printing the label of each one found
+//       a result is only found for the same workload, policy config, CPUs, balancing, switch
+//         cost and simulator version (see ResultCache.SIMULATOR)
+   ===================================================================================== */
+    static RunStats [] cached(String workload){
+        RunStats [] have = new RunStats[configs().length];
+        if(cache == null || workload == null || events != null) return have;  // (a recorded run is always run)
+        for(int a=0; a<configs().length; a++){
+            have[a] = cache.get(cacheKey(workload, a));
+            if(have[a] != null) System.out.println(label(a)+" (cached)");
+        }
+        return have;
+    }
+    
+    // Pre: passed the description of a workload (null to not cache), an algorithm number and
+    //        the statistics of its run on the workload
+    // Post: puts them in CPUSimulator.cache, if there is one; returns them
+    static RunStats stored(String workload, int alg, RunStats r){
+        if(cache != null && workload != null) cache.put(cacheKey(workload, alg), r);
+        return r;
+    }
+    
+    // Post: returns the key of the run of algorithm alg on the workload: everything its
+    //         results depend on
+    static String cacheKey(String workload, int alg){
+        return workload+" policy="+configs()[alg]+" cpus="+cpus+" balance="+balance+" switch="+switchCost
+               +" simulator="+ResultCache.SIMULATOR;
+    }
+    
+/* =====================================================================================
+// Pre:  passed an algorithm number (index into configs()), a table of processes, a freshly
+//         reset state on it and the epoch
+// Post: returns the statistics of the run, on CPUSimulator.cpus CPUs
+//       the state only gets the per-process results of runs on one CPU
+   ===================================================================================== */
+    static RunStats run(int alg, ProcessTable t, ProcessTable.State s, int e){
+        //===============================DEBUGGING CODE=========================//
+        if(demo){
+            System.out.println("\n"+label(alg));
+            System.out.println(debugHeader);
+        }
+        //======================================================================//
+        if(!demo) System.out.println(label(alg));
+        return simulate(alg, t::stream, s, e);
+    }
+    
+    // Post: returns the policy configs being compared (demoPolicies in a demo)
+    static String [] configs(){ return demo ? demoPolicies : policies; }
+    
+    // Pre: passed an algorithm number; Post: returns its printable name, e.g. "RR (100)"
+    static String label(int alg){ return SchedulingAlgorithms.label(configs()[alg]); }
 }
@@ -0,0 +1,133 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/* =====================================================================================
+// Checkpoint keeps the progress of a campaign of epochs in a file, so a run that is stopped
+//   (a crash, a preempted node) can be resumed without redoing the epochs it finished
+//
+// Format (a DataOutputStream, so big-endian):
+//   int magic ("SCCK"), int version, the run description (UTF), long root seed,
+//   int number of epochs done, int index of each, int number of variants, then the
+//   merged RunStats of each variant over those epochs (see RunStats.write)
+//
+// Every epoch's seed is split off the root seed, so the seed and the epochs done are all it
+//   takes to carry on: an epoch that was running when the run stopped is simply run again.
+// The run description holds every option that changes the results (N, policies, CPUs,
+//   etc.), so a checkpoint is never resumed with different ones.
+// The file is replaced atomically: a new checkpoint is written to a temporary file, forced
+//   to disk and then renamed over the old one, so there is always a whole checkpoint.
+   ===================================================================================== */
+public class Checkpoint {
+    public static final int MAGIC = 0x5343434B;     // "SCCK"
+    public static final int VERSION = 3;
+
+    final Path path;                // the checkpoint file
+    final String run;               // description of the run it belongs to
+    final long seed;                // root seed of the run
+    final long every;               // nanoseconds to leave between writes
+    final BitSet done = new BitSet();   // epochs finished
+    RunStats [] result = null;      // statistics of the finished epochs, per variant
+    long written;                   // System.nanoTime() of the last write
+
+    // Pre: passed the file to keep the checkpoint in, the description and root seed of the
+    //        run and the seconds to leave between writes (0 writes after every epoch)
+    // Post: a checkpoint with no epochs done (nothing is written until one is)
+    public Checkpoint(Path path, String run, long seed, double every){
+        this.path = path;
+        this.run = run;
+        this.seed = seed;
+        this.every = (long)(every*1e9);
+        written = System.nanoTime();
+    }
+
+/* =====================================================================================
+// Pre:  passed the checkpoint file of a run, its description and the seconds to leave
+//         between writes
+// Post: returns the checkpoint read from the file (with the seed the run started with)
+//       throws IOException if it is not a checkpoint, and IllegalArgumentException if it
+//         belongs to a run with different options
+   ===================================================================================== */
+    public static Checkpoint load(Path path, String run, double every) throws IOException{
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))){
+            if(in.readInt() != MAGIC) throw new IOException(path+" is not a checkpoint");
+            int version = in.readInt();
+            if(version != VERSION) throw new IOException(path+" has unsupported checkpoint version "+version);
+            String saved = in.readUTF();
+            if(!saved.equals(run))
+                throw new IllegalArgumentException(path+" is a checkpoint of a different run ("+saved+")");
+            Checkpoint c = new Checkpoint(path, run, in.readLong(), every);
+            int n = in.readInt();
+            for(int i=0; i<n; i++) c.done.set(in.readInt());
+            int variants = in.readInt();
+            if(variants > 0){
+                c.result = new RunStats[variants];
+                for(int a=0; a<variants; a++) c.result[a] = RunStats.read(in);
+            }
+            return c;
+        }catch(EOFException ex){
+            throw new IOException(path+" is truncated", ex);
+        }
+    }
+
+    public long seed(){ return seed; }
+    public synchronized int done(){ return done.cardinality(); }
+    public synchronized boolean isDone(int e){ return done.get(e); }
+    public synchronized RunStats [] result(){ return result; }
+
+    // Pre: passed an epoch that was not done and the statistics of its variants
+    // Post: folds them in (keeping its own copy), and writes the checkpoint if it has not
+    //         been written for long enough; throws UncheckedIOException if writing fails
+    public synchronized void add(int e, RunStats [] r){
+        if(result == null){
+            result = new RunStats[r.length];
+            for(int a=0; a<r.length; a++) result[a] = new RunStats();
+        }
+        for(int a=0; a<r.length; a++) result[a].merge(r[a]);
+        done.set(e);
+        if(System.nanoTime()-written < every) return;
+        try{
+            write();
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Post: the file holds this checkpoint, replacing the old one in one step
+    public synchronized void write() throws IOException{
+        Path tmp = path.resolveSibling(path.getFileName()+".tmp");
+        try(FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                              StandardOpenOption.TRUNCATE_EXISTING)){
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(run);
+            out.writeLong(seed);
+            out.writeInt(done.cardinality());
+            for(int e=done.nextSetBit(0); e >= 0; e=done.nextSetBit(e+1)) out.writeInt(e);
+            out.writeInt(result == null ? 0 : result.length);
+            if(result != null) for(RunStats s: result) s.write(out);
+            out.flush();
+            ch.force(true);     // on disk before it replaces the old one
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        written = System.nanoTime();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+
+/* =====================================================================================
+// CsvStream is a ProcessStream that parses a CSV job trace as it is read, one line at a time
+// Each line is one job: arrival time, burst time and, optionally, priority (e.g.
+//   "1500,320,0"). Blank lines, lines starting with '#' and a header line are skipped. Jobs
+//   must be in order of arrival, from time 0 on (as TraceFile.Writer requires too).
+// Only the next job is kept, so it can read from a file, a pipe or a socket that jobs are
+//   still being written to: hasNext() waits until the next line (or the end) comes in.
+// Jobs are numbered from 0 in order, as their ID.
+   ===================================================================================== */
+public class CsvStream implements ProcessStream {
+    final BufferedReader in;        // where the lines come from
+    final String name;              // name of the source, for errors
+    long lineNo = 0;                // lines read so far
+    long count = 0;                 // jobs handed out so far
+    boolean more;                   // true iff there is a next job
+    long arrival = 0;               // the next job (arrival starts at the earliest allowed)
+    long burst;
+    int priority;
+
+    // Pre: passed a reader of CSV lines and its name (for errors)
+    // Post: reads up to the first job
+    public CsvStream(BufferedReader in, String name){
+        this.in = in;
+        this.name = name;
+        read();
+    }
+
+    @Override public boolean hasNext(){ return more; }
+    @Override public long arrival(){ return arrival; }
+    @Override public long burst(){ return burst; }
+    @Override public long id(){ return count; }
+    @Override public int priority(){ return priority; }
+    @Override public void next(){ count++; read(); }
+
+    // read up to the next job, if there is one
+    //   throws IllegalArgumentException (naming the line) if a line is not a job in order,
+    //   and UncheckedIOException if reading fails
+    private void read(){
+        try{
+            String line;
+            while((line = in.readLine()) != null){
+                lineNo++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) continue;
+                // the first line is a header if it does not start with a number (a negative
+                //   one is read, to be rejected below with its line number)
+                if(lineNo == 1 && !Character.isDigit(line.charAt(0)) && line.charAt(0) != '-') continue;
+                String [] f = line.split(",");
+                try{
+                    if(f.length < 2 || f.length > 3) throw new IllegalArgumentException("expected 2 or 3 fields");
+                    long at = Long.parseLong(f[0].trim());
+                    long bt = Long.parseLong(f[1].trim());
+                    if(at < 0) throw new IllegalArgumentException("arrival time "+at+" is not >= 0");
+                    if(at < arrival) throw new IllegalArgumentException("arrives at "+at+", before the previous job");
+                    if(bt <= 0) throw new IllegalArgumentException("burst time "+bt+" is not > 0");
+                    arrival = at;
+                    burst = bt;
+                    priority = f.length == 3 ? Integer.parseInt(f[2].trim()) : 0;
+                }catch(IllegalArgumentException ex){    // includes NumberFormatException
+                    throw new IllegalArgumentException(name+" line "+lineNo+": "+ex.getMessage(), ex);
+                }
+                more = true;
+                return;
+            }
+            more = false;
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/* =====================================================================================
+// EventLog records what a simulation did (every dispatch, preemption, completion, wait for
+//   I/O and idle span, per CPU) to a binary file, for EventView to draw as a timeline
+// The simulator writes records into a ring of chunks of one direct (off-heap) buffer,
+//   allocated once; a full chunk is handed to a background thread that writes it to the
+//   file and hands it back. So recording costs a few stores per event, and the simulator
+//   only waits if the disk falls a whole ring behind.
+// To keep the file small in huge runs, only the events of 1 in every `sample` processes are
+//   kept, chosen by a hash of the process ID (so a process kept has all of its events).
+//   Idle spans are always kept.
+//
+// Format (big-endian): int magic ("SCEV"), int version, int CPUs, long sample, the policy
+//   (UTF), then records of RECORD bytes until the end of the file:
+//     long time, long process ID (the end of the span for IDLE), int processes waiting,
+//     short CPU, byte type, byte 0
+   ===================================================================================== */
+public class EventLog implements AutoCloseable {
+    public static final int MAGIC = 0x53434556;     // "SCEV"
+    public static final int VERSION = 1;
+    public static final int RECORD = 24;            // bytes per event
+    public static final byte DISPATCH = 0, PREEMPT = 1, COMPLETE = 2, IDLE = 3, BLOCK = 4;  // event types
+    public static final int defaultBuffer = 4 << 20;    // bytes of ring buffer
+    static final int CHUNKS = 8;    // chunks the ring is split into
+
+    final long sample;              // keep 1 in every sample processes
+    final FileChannel ch;           // the file
+    final ByteBuffer [] chunk;      // the ring
+    final BlockingQueue<Integer> full = new ArrayBlockingQueue<>(CHUNKS+1);   // chunks to write (-1 to stop)
+    final BlockingQueue<Integer> free = new ArrayBlockingQueue<>(CHUNKS);     // chunks to fill
+    final Thread writer;
+    ByteBuffer buf;                 // chunk being filled
+    int cur;                        // its number
+    long events = 0;                // events recorded
+    volatile IOException failed;    // what stopped the writer, if it failed
+
+/* =====================================================================================
+// Pre:  passed the file to write (replaced if it exists), the number of CPUs and the policy
+//         of the run, to keep 1 in every sample > 0 processes, and the bytes of ring buffer
+//         (at least CHUNKS records)
+// Post: the file has its header, and the log is ready for events
+//       throws IOException if the file cannot be written
+   ===================================================================================== */
+    public EventLog(Path file, int cpus, String policy, long sample, int bufferBytes) throws IOException{
+        if(sample <= 0) throw new IllegalArgumentException("Sampling must be > 0");
+        int size = bufferBytes/CHUNKS/RECORD*RECORD;
+        if(size <= 0) throw new IllegalArgumentException("Event buffer is too small");
+        this.sample = sample;
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(cpus);
+        out.writeLong(sample);
+        out.writeUTF(policy);
+        ByteBuffer h = ByteBuffer.wrap(header.toByteArray());
+        while(h.hasRemaining()) ch.write(h);
+        ByteBuffer ring = ByteBuffer.allocateDirect(size*CHUNKS);
+        chunk = new ByteBuffer[CHUNKS];
+        for(int i=0; i<CHUNKS; i++){
+            ring.limit((i+1)*size).position(i*size);
+            chunk[i] = ring.slice();
+            if(i > 0) free.add(i);
+        }
+        cur = 0;
+        buf = chunk[0];
+        writer = new Thread(this::drain, "event-writer "+file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Post: returns true iff the events of the process with this ID are kept
+    public boolean sampled(long id){
+        if(sample == 1) return true;
+        long h = id*0x9E3779B97F4A7C15L;
+        return Long.remainderUnsigned(h ^ (h >>> 29), sample) == 0;
+    }
+
+    // Pre: passed a CPU, the time, a process and the number of processes waiting
+    // Post: the process started running on the CPU (recorded if it is sampled)
+    public void dispatch(int cpu, long clock, long id, int waiting){
+        if(sampled(id)) put(DISPATCH, cpu, clock, id, waiting);
+    }
+
+    // Same as above, but the process stopped running with time left
+    public void preempt(int cpu, long clock, long id, int waiting){
+        if(sampled(id)) put(PREEMPT, cpu, clock, id, waiting);
+    }
+
+    // Same as above, but the process completed
+    public void complete(int cpu, long clock, long id, int waiting){
+        if(sampled(id)) put(COMPLETE, cpu, clock, id, waiting);
+    }
+
+    // Same as above, but the process stopped running to wait for I/O
+    public void block(int cpu, long clock, long id, int waiting){
+        if(sampled(id)) put(BLOCK, cpu, clock, id, waiting);
+    }
+
+    // Pre: passed a CPU and a span of time from < to; Post: the CPU was idle for the span
+    public void idle(int cpu, long from, long to){
+        if(from < to) put(IDLE, cpu, from, to, 0);
+    }
+
+    public long events(){ return events; }
+
+    // write one record, handing the chunk to the writer if it is full
+    private void put(byte type, int cpu, long clock, long id, int waiting){
+        if(!buf.hasRemaining()) swap();
+        buf.putLong(clock).putLong(id).putInt(waiting).putShort((short)cpu).put(type).put((byte)0);
+        events++;
+    }
+
+    // hand the current chunk to the writer and take a free one (waiting for one if need be)
+    private void swap(){
+        if(failed != null) throw new UncheckedIOException(failed);
+        try{
+            full.put(cur);
+            cur = free.take();
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recording events", ex);
+        }
+        buf = chunk[cur];
+    }
+
+    // the writer: writes the chunks it is handed, in order, until handed -1
+    private void drain(){
+        try{
+            while(true){
+                int c = full.take();
+                if(c < 0) return;
+                ByteBuffer b = chunk[c];
+                b.flip();
+                try{
+                    while(b.hasRemaining()) ch.write(b);
+                }catch(IOException ex){
+                    if(failed == null) failed = ex;     // keep taking chunks so nothing waits
+                }
+                b.clear();
+                free.put(c);
+            }
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Post: every event is in the file, which is closed
+    //       throws IOException if writing any of them failed
+    @Override public void close() throws IOException{
+        try{
+            if(buf.position() > 0) full.put(cur);
+            full.put(-1);
+            writer.join();
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the event log");
+        }finally{
+            ch.close();
+        }
+        if(failed != null) throw failed;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/* =====================================================================================
+// EventView draws an event log (see EventLog) as text:
+//   a Gantt chart, one row per CPU and one column per slice of the time shown, marking the
+//     process that ran (a letter or digit, * if several did), idle time (.) and time not
+//     recorded (blank, e.g. processes left out by sampling),
+//   a legend of which process each mark stands for (the first seen; ",..." if others share
+//     it), and
+//   the number of processes waiting over time, as a bar chart.
+// Usage: java Analysis.EventView file [--from=t] [--to=t] [--width=cols] [--rows=n] [--dump]
+//   --from / --to pick the time shown (default all of it), --width the columns of the chart
+//   (default 100), --rows the rows of the bar chart (default 20), and --dump prints every
+//   event as a line of text instead.
+// The file is read twice, a record at a time, so it can be far bigger than memory.
+   ===================================================================================== */
+public class EventView {
+    static final String marks = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    static final String [] types = {"dispatch", "preempt", "complete", "idle", "block"};
+
+    // the header and current record of a log being read
+    static class Reader implements Closeable {
+        final DataInputStream in;
+        final int cpus;
+        final long sample;
+        final String policy;
+        long time, id;              // the current record
+        int waiting, cpu, type;
+
+        Reader(Path file) throws IOException{
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            if(in.readInt() != EventLog.MAGIC) throw new IOException(file+" is not an event log");
+            int version = in.readInt();
+            if(version != EventLog.VERSION) throw new IOException(file+" has unsupported event log version "+version);
+            cpus = in.readInt();
+            sample = in.readLong();
+            policy = in.readUTF();
+        }
+
+        // Post: reads the next record; returns false at the end of the file
+        boolean next() throws IOException{
+            try{
+                time = in.readLong();
+            }catch(EOFException ex){
+                return false;
+            }
+            id = in.readLong();
+            waiting = in.readInt();
+            cpu = in.readShort();
+            type = in.readByte();
+            in.readByte();
+            return true;
+        }
+
+        @Override public void close() throws IOException{ in.close(); }
+    }
+
+    public static void main(String [] args) throws IOException{
+        String file = null;
+        long from = Long.MIN_VALUE, to = Long.MAX_VALUE;
+        int width = 100, rows = 20;
+        boolean dump = false;
+        for(String arg: args){
+            String [] kv = arg.split("=", 2);
+            switch(kv[0]){
+                case "--from":  from = Long.parseLong(kv[1]); break;
+                case "--to":    to = Long.parseLong(kv[1]); break;
+                case "--width": width = Integer.parseInt(kv[1]); break;
+                case "--rows":  rows = Integer.parseInt(kv[1]); break;
+                case "--dump":  dump = true; break;
+                default:
+                    if(arg.startsWith("--")) throw new IllegalArgumentException("Unknown option: "+arg);
+                    file = arg;
+            }
+        }
+        if(file == null) throw new IllegalArgumentException("Usage: EventView file [--from=t] [--to=t] [--width=cols] [--rows=n] [--dump]");
+        if(width <= 0 || rows <= 0) throw new IllegalArgumentException("Width and rows must be > 0");
+        Path path = Paths.get(file);
+        if(dump) dump(path);
+        else view(path, from, to, width, rows);
+    }
+
+    // Post: prints every event of the log as a line of text
+    static void dump(Path path) throws IOException{
+        try(Reader r = new Reader(path)){
+            System.out.println("Time\tCPU\tEvent\tPID\tWaiting");
+            while(r.next()){
+                if(r.type == EventLog.IDLE) System.out.println(r.time+"\t"+r.cpu+"\tidle\tuntil "+r.id+"\t");
+                else System.out.println(r.time+"\t"+r.cpu+"\t"+types[r.type]+"\t"+r.id+"\t"+r.waiting);
+            }
+        }
+    }
+
+/* =====================================================================================
+// Pre:  passed an event log, the span of time to show (Long.MIN_VALUE / MAX_VALUE for its
+//         start / end) and the columns and rows of the charts
+// Post: prints the Gantt chart, legend and waiting processes of that span
+   ===================================================================================== */
+    static void view(Path path, long from, long to, int width, int rows) throws IOException{
+        long [] count = new long[types.length];
+        long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+        try(Reader r = new Reader(path)){     // first pass: what the log spans
+            while(r.next()){
+                count[r.type]++;
+                first = Math.min(first, r.time);
+                last = Math.max(last, r.type == EventLog.IDLE ? r.id : r.time);
+            }
+        }
+        if(first > last){ System.out.println(path+" has no events"); return; }
+        if(from == Long.MIN_VALUE) from = first;
+        if(to == Long.MAX_VALUE) to = last+1;
+        if(to <= from) throw new IllegalArgumentException("--to must be after --from");
+
+        try(Reader r = new Reader(path)){     // second pass: draw it
+            System.out.println(r.policy+" on "+r.cpus+" CPU(s), 1 in "+r.sample+" processes recorded: "
+                               +count[0]+" dispatches, "+count[1]+" preemptions, "+count[2]+" completions, "
+                               +count[4]+" waits for I/O, "+count[3]+" idle spans");
+            System.out.println("Time "+from+" to "+to+" ("+Math.max(1, (to-from)/width)+" ticks per column)\n");
+            char [][] gantt = new char[r.cpus][width];
+            for(char [] row: gantt) Arrays.fill(row, ' ');
+            long [] running = new long[r.cpus], since = new long[r.cpus];
+            Arrays.fill(running, -1);
+            TreeMap<Character, long []> legend = new TreeMap<>();  // first process of each mark, and if others had it
+            long [] depth = new long[rows];     // most processes waiting in each row's span
+            boolean [] seen = new boolean[rows];
+            while(r.next()){
+                if(r.type == EventLog.IDLE){
+                    paint(gantt[r.cpu], r.time, r.id, from, to, '.', legend, -1);
+                    continue;
+                }
+                if(r.time >= from && r.time < to){
+                    int row = (int)((r.time-from)*rows/(to-from));
+                    depth[row] = Math.max(depth[row], r.waiting);
+                    seen[row] = true;
+                }
+                if(r.type == EventLog.DISPATCH){
+                    running[r.cpu] = r.id;
+                    since[r.cpu] = r.time;
+                }else if(running[r.cpu] == r.id){
+                    char m = marks.charAt((int)Long.remainderUnsigned(r.id, marks.length()));
+                    paint(gantt[r.cpu], since[r.cpu], r.time, from, to, m, legend, r.id);
+                    running[r.cpu] = -1;
+                }
+            }
+            for(int c=0; c<r.cpus; c++) System.out.println("CPU "+c+"\t|"+new String(gantt[c])+"|");
+            StringBuilder key = new StringBuilder("\nLegend: . idle, * several processes, blank not recorded");
+            int shown = 0;
+            for(Map.Entry<Character, long []> e: legend.entrySet()){
+                if(shown++ % 8 == 0) key.append("\n");
+                key.append(e.getKey()).append("=").append(e.getValue()[0]).append(e.getValue()[1] > 0 ? ",..." : "").append("\t");
+            }
+            System.out.println(key);
+
+            long most = 1;
+            for(long d: depth) most = Math.max(most, d);
+            System.out.println("\nProcesses waiting (most in each span):");
+            for(int i=0; i<rows; i++){
+                long t = from+(to-from)*i/rows;
+                String bar = seen[i] ? "#".repeat((int)(depth[i]*50/most)) : "";
+                System.out.println(t+"\t"+(seen[i] ? String.valueOf(depth[i]) : "-")+"\t"+bar);
+            }
+        }
+    }
+
+    // mark the columns of row that [a, b) covers within [from, to) with m (* where another
+    //   process is already marked; idle (.) only marks blank columns), and note the process
+    //   in the legend
+    static void paint(char [] row, long a, long b, long from, long to, char m, Map<Character, long []> legend, long id){
+        if(b <= from || a >= to || b <= a) return;
+        int c0 = (int)((Math.max(a, from)-from)*row.length/(to-from));
+        int c1 = (int)((Math.min(b, to)-1-from)*row.length/(to-from));
+        for(int c=c0; c<=c1; c++){
+            if(m == '.'){ if(row[c] == ' ') row[c] = '.'; }
+            else if(row[c] == ' ' || row[c] == '.' || row[c] == m) row[c] = m;
+            else row[c] = '*';
+        }
+        if(id < 0) return;
+        long [] seen = legend.putIfAbsent(m, new long[]{id, 0});
+        if(seen != null && seen[0] != id) seen[1] = 1;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+
+/* =====================================================================================
+// IntQueue is a FIFO queue of ints stored in a circular buffer, used as the run queue of
+//   FCFS and RR
+// The buffer doubles when it is full and never shrinks, so once it has grown to the
+//   largest number of queued processes, adding and removing allocate nothing.
+   ===================================================================================== */
+public class IntQueue {
+    int [] buf;         // circular buffer; its length is always a power of two
+    int head = 0;       // index of the first element
+    int size = 0;       // number of queued elements
+
+    public IntQueue(){ this(16); }
+
+    // Pre: passed the number of elements expected to be queued at once (> 0)
+    public IntQueue(int capacity){
+        buf = new int[Integer.highestOneBit(Math.max(capacity-1, 1)) << 1];
+    }
+
+    public boolean isEmpty(){ return size == 0; }
+    public int size(){ return size; }
+    public int peek(){ return buf[head]; }   // first element (queue not empty)
+    public int get(int i){ return buf[(head+i) & (buf.length-1)]; }    // i-th element from the front (i < size)
+
+    // Post: adds x to the back of the queue
+    public void add(int x){
+        if(size == buf.length) grow();
+        buf[(head+size) & (buf.length-1)] = x;
+        size++;
+    }
+
+    // Pre: the queue is not empty; Post: removes and returns the first element
+    public int remove(){
+        int x = buf[head];
+        head = (head+1) & (buf.length-1);
+        size--;
+        return x;
+    }
+
+    // Post: empties the queue (keeping its buffer)
+    public void clear(){ head = 0; size = 0; }
+
+    // double the buffer, unwrapping the elements to the front of the new one
+    private void grow(){
+        int [] next = new int[buf.length << 1];
+        int first = buf.length-head;    // elements from head to the end of the old buffer
+        System.arraycopy(buf, head, next, 0, first);
+        System.arraycopy(buf, 0, next, first, head);
+        buf = next;
+        head = 0;
+    }
+}
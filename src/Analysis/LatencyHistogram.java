@@ -0,0 +1,153 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.util.*;
+
+/* =====================================================================================
+// LatencyHistogram counts non-negative long values (times in ticks) in log-scaled buckets,
+//   so it can report percentiles of any number of values in a fixed amount of memory
+// Values below 2^bits get a bucket each. Above that, every power of two [2^k, 2^(k+1)) is
+//   split into 2^(bits-1) equal buckets, so a bucket is never wider than 1/2^(bits-1) of
+//   the values in it (under 1% for the default bits = 8) whatever their size.
+// The buckets are allocated once, so recording a value never allocates. Histograms with
+//   the same bits can be merged (across epochs or threads) by adding their counts.
+   ===================================================================================== */
+public class LatencyHistogram {
+    final int bits;         // precision: values keep their top bits significant bits
+    final int half;         // buckets per power of two above 2^bits (2^(bits-1))
+    final long [] counts;   // number of values in each bucket
+    long count = 0;         // number of values recorded
+    long min = Long.MAX_VALUE, max = 0; // smallest and largest value recorded
+    double sum = 0;         // sum of the values recorded
+
+    public LatencyHistogram(){ this(8); }
+
+    // Pre: passed 1 <= bits <= 16
+    public LatencyHistogram(int bits){
+        if(bits < 1 || bits > 16) throw new IllegalArgumentException("bits must be in 1..16");
+        this.bits = bits;
+        half = 1 << (bits-1);
+        counts = new long[bucket(Long.MAX_VALUE)+1];
+    }
+
+    // Pre: passed a value >= 0; Post: returns the number of its bucket
+    int bucket(long v){
+        if(v < (1L << bits)) return (int)v;
+        int shift = 64-Long.numberOfLeadingZeros(v)-bits;   // v >>> shift keeps the top bits bits
+        return shift*half+(int)(v >>> shift);
+    }
+
+    // Pre: passed a bucket number; Post: returns the largest value that goes in that bucket
+    long highest(int b){
+        if(b < (1 << bits)) return b;
+        int shift = b/half-1;
+        long top = b-(long)shift*half;
+        return ((top+1) << shift)-1;
+    }
+
+    // Pre: passed a value (negative values are counted as 0); Post: the value is counted
+    public void record(long v){
+        if(v < 0) v = 0;
+        counts[bucket(v)]++;
+        count++;
+        sum += v;
+        if(v < min) min = v;
+        if(v > max) max = v;
+    }
+
+    // Pre: passed a histogram with the same bits; Post: adds its values to this one; returns this
+    public LatencyHistogram merge(LatencyHistogram o){
+        if(o.bits != bits) throw new IllegalArgumentException("Histograms have different precision");
+        for(int b=0; b<counts.length; b++) counts[b] += o.counts[b];
+        count += o.count;
+        sum += o.sum;
+        min = Math.min(min, o.min);
+        max = Math.max(max, o.max);
+        return this;
+    }
+
+    // Post: every value recorded is forgotten, so the histogram can be reused
+    public void clear(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0;
+    }
+
+    // Post: writes the histogram to out, with only the buckets that have values in them
+    public void write(DataOutput out) throws IOException{
+        out.writeInt(bits);
+        out.writeLong(count);
+        out.writeLong(min);
+        out.writeLong(max);
+        out.writeDouble(sum);
+        int used = 0;
+        for(long c: counts) if(c != 0) used++;
+        out.writeInt(used);
+        for(int b=0; b<counts.length; b++){
+            if(counts[b] == 0) continue;
+            out.writeInt(b);
+            out.writeLong(counts[b]);
+        }
+    }
+
+    // Pre: passed input where a histogram was written with write
+    // Post: returns the histogram read from it; throws IOException if it is not one
+    public static LatencyHistogram read(DataInput in) throws IOException{
+        int bits = in.readInt();
+        if(bits < 1 || bits > 16) throw new IOException("Bad histogram precision "+bits);
+        LatencyHistogram h = new LatencyHistogram(bits);
+        h.count = in.readLong();
+        h.min = in.readLong();
+        h.max = in.readLong();
+        h.sum = in.readDouble();
+        int used = in.readInt();
+        for(int i=0; i<used; i++){
+            int b = in.readInt();
+            if(b < 0 || b >= h.counts.length) throw new IOException("Bad histogram bucket "+b);
+            h.counts[b] = in.readLong();
+        }
+        return h;
+    }
+
+    public long count(){ return count; }
+    public long min(){ return count == 0 ? 0 : min; }
+    public long max(){ return max; }
+    public double mean(){ return count == 0 ? 0 : sum/count; }
+
+/* =====================================================================================
+// Pre:  passed a percentile 0 <= p <= 100
+// Post: returns a value that at least p percent of the recorded values are at most (the top
+//         of the bucket holding that rank, capped at the largest value); 0 if empty
+   ===================================================================================== */
+    public long percentile(double p){
+        if(count == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(p/100*count));  // rank of the value wanted
+        long seen = 0;
+        for(int b=0; b<counts.length; b++){
+            seen += counts[b];
+            if(seen >= rank) return Math.min(highest(b), max);
+        }
+        return max;
+    }
+
+    // Post: returns the p50/p90/p99/p99.9 percentiles, e.g. for printing
+    public String summary(){
+        return percentile(50)+" / "+percentile(90)+" / "+percentile(99)+" / "+percentile(99.9);
+    }
+}
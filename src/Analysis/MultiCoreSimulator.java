@@ -0,0 +1,333 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/* =====================================================================================
+// MultiCoreSimulator runs a scheduling policy on several CPUs at once
+// The CPUs share the clock and every process runs on one CPU at a time. How the ready
+//   processes are shared out between the CPUs is the balance mode:
+//     global      - one run queue (one Scheduler) shared by every CPU; a free CPU takes the
+//                     next process the scheduler picks
+//     balanced    - a run queue per CPU; an arriving process goes to the CPU with the
+//                     fewest processes (queued or running)
+//     stealing    - a run queue per CPU; arrivals are dealt out in turn, and a CPU with an
+//                     empty queue steals the next process from the CPU with the most queued
+//     partitioned - a run queue per CPU; arrivals are dealt out in turn and never move
+// Besides the usual statistics, a run records the busy time of every CPU and how many times
+//   a process resumed on a different CPU than it last ran on (a migration).
+// Context switches cost what a SwitchCost says, per CPU; a migrated process always starts
+//   with a cold cache.
+// A process that waits for I/O (see ProcessStream) leaves its CPU until the I/O completes,
+//   then is queued again on the CPU it last ran on (or the shared queue in global mode).
+// In partitioned mode the CPUs never interact, so each one is simulated on its own (in
+//   parallel when called from a ForkJoinPool worker). In the other modes every event can
+//   affect every CPU, so all of them advance together in one event loop.
+   ===================================================================================== */
+public class MultiCoreSimulator {
+    public static final String [] modes = {"global", "balanced", "stealing", "partitioned"};
+
+    // Pre: passed a balance mode; Post: throws IllegalArgumentException if it is not one of modes
+    public static void checkMode(String mode){
+        if(!Arrays.asList(modes).contains(mode))
+            throw new IllegalArgumentException("Unknown balance mode: "+mode);
+    }
+
+/* =====================================================================================
+// Pre:  passed a policy config (see SchedulingAlgorithms.scheduler), a source of streams
+//         that all give the same processes, a number of CPUs > 0 and a balance mode
+// Post: returns the statistics of running the processes on that many CPUs
+   ===================================================================================== */
+    public static RunStats run(String config, Supplier<ProcessStream> source, int cpus, String mode){
+        return run(config, source, cpus, mode, SwitchCost.NONE);
+    }
+
+    // Same as above, but every context switch costs the CPU what cost says
+    public static RunStats run(String config, Supplier<ProcessStream> source, int cpus, String mode, SwitchCost cost){
+        checkMode(mode);
+        if(!mode.equals("partitioned")) return run(config, source.get(), cpus, mode, cost);
+
+        // every CPU runs its share of the processes on its own
+        List<ForkJoinTask<RunStats>> runs = new ArrayList<>();
+        for(int c=0; c<cpus; c++){
+            final int cpu = c;
+            runs.add(ForkJoinTask.adapt(() -> Simulator.run(SchedulingAlgorithms.scheduler(config),
+                                                            share(source.get(), cpus, cpu), null,
+                                                            new RunStats(), cost)));
+        }
+        if(ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(runs);
+        else for(ForkJoinTask<RunStats> r: runs) r.invoke();
+
+        RunStats stats = new RunStats();
+        long [] busy = new long[cpus];
+        long total = 0;
+        for(int c=0; c<cpus; c++){
+            RunStats s = runs.get(c).join();
+            stats.merge(s);                 // the processes of every CPU
+            busy[c] = s.total-s.idle;
+            total = Math.max(total, s.total);
+        }
+        stats.idle = stats.total = stats.runs = 0;  // but one run, ending with the last CPU
+        stats.finish(busy, total, 0);
+        return stats;
+    }
+
+/* =====================================================================================
+// Pre:  passed a policy config, a stream of processes, a number of CPUs > 0 and a balance
+//         mode (partitioned runs here too, without the parallelism)
+// Post: returns the statistics of running the processes on that many CPUs, simulated
+//         together in one event loop
+   ===================================================================================== */
+    public static RunStats run(String config, ProcessStream in, int cpus, String mode){
+        return run(config, in, cpus, mode, SwitchCost.NONE);
+    }
+
+    // Same as above, but every context switch costs the CPU what cost says
+    public static RunStats run(String config, ProcessStream in, int cpus, String mode, SwitchCost cost){
+        return run(config, in, cpus, mode, cost, new RunStats());
+    }
+
+    // Same as above, but folds the run into stats, and returns stats
+    public static RunStats run(String config, ProcessStream in, int cpus, String mode, SwitchCost cost, RunStats stats){
+        return run(config, in, cpus, mode, cost, stats, null);
+    }
+
+    // Same as above, but records what happens in log (if it is not null)
+    public static RunStats run(String config, ProcessStream in, int cpus, String mode, SwitchCost cost, RunStats stats,
+                               EventLog log){
+        checkMode(mode);
+        MultiCoreSimulator sim = new MultiCoreSimulator(config, cpus, mode, cost);
+        sim.log = log;
+        return sim.run(in, stats);
+    }
+
+    final int cpus;                 // number of CPUs
+    final String mode;              // balance mode
+    final SwitchCost cost;          // cost of a context switch
+    final boolean global;           // true iff every CPU shares q[0]
+    final Scheduler [] q;           // run queue of each CPU
+    final int [] queued;            // processes waiting in each queue (only q[0] if global)
+    final int [] cur;               // slot running on each CPU, -1 if it is free
+    final long [] end, from;        // end of the running slice, time it was last accounted up to
+                                    //   (ahead of the clock while the CPU is switching to it)
+    final long [] prev;             // arrival order of the process each CPU ran last, -1 if none
+    final long [] busy;             // time each CPU has been busy
+    final boolean [] ran;           // CPUs that were running before the current event
+    final boolean [] arrived;       // queues that processes arrived in at the current event
+    final Simulator.Slots p = new Simulator.Slots();
+    final ReadyHeap io = new ReadyHeap(16); // processes blocked for I/O, by the time it completes
+    int [] last = new int[16];      // CPU each slot last ran on, -1 if it has not run
+    int running = 0;                // number of busy CPUs
+    long migrations = 0;            // processes that resumed on a different CPU
+    long currClock = 0;             // the logical clock
+    RunStats stats;                 // statistics the run folds into
+    EventLog log = null;            // where to record what happens, null for nowhere
+
+    MultiCoreSimulator(String config, int cpus, String mode, SwitchCost cost){
+        if(cpus <= 0) throw new IllegalArgumentException("Number of CPUs must be > 0");
+        this.cpus = cpus;
+        this.mode = mode;
+        this.cost = cost;
+        global = mode.equals("global");
+        q = new Scheduler[cpus];
+        for(int c=0; c<cpus; c++){
+            q[c] = global && c > 0 ? q[0] : SchedulingAlgorithms.scheduler(config);
+            if(c == 0 || !global) q[c].init(p);
+        }
+        queued = new int[cpus];
+        cur = new int[cpus];
+        Arrays.fill(cur, -1);
+        end = new long[cpus];
+        from = new long[cpus];
+        prev = new long[cpus];
+        Arrays.fill(prev, -1);
+        busy = new long[cpus];
+        ran = new boolean[cpus];
+        arrived = new boolean[cpus];
+    }
+
+    // Post: runs every process from in and folds them into stats; returns stats
+    RunStats run(ProcessStream in, RunStats stats){
+        this.stats = stats;
+        boolean preemptive = q[0].preemptive();     // stop at arrivals to ask preempts
+        while(true){
+            for(int c=0; c<cpus; c++) if(cur[c] < 0) dispatch(c);  // give every free CPU work
+            if(running == 0 && !in.hasNext() && io.isEmpty()) break;    // every queue is empty too
+
+            // jump the clock to the next event: the end of a slice, an arrival or an I/O
+            //   completing
+            long next = Long.MAX_VALUE;
+            for(int c=0; c<cpus; c++) if(cur[c] >= 0) next = Math.min(next, end[c]);
+            if(in.hasNext() && in.arrival() < next) next = Math.max(in.arrival(), currClock);
+            if(!io.isEmpty() && io.key(io.peek()) < next) next = io.key(io.peek());
+            if(running < cpus) stats.idled(currClock, next, cpus-running);
+            if(log != null && running < cpus && next != Long.MAX_VALUE)
+                for(int c=0; c<cpus; c++) if(cur[c] < 0) log.idle(c, currClock, next);
+            for(int c=0; c<cpus; c++){  // the running processes ran until then
+                if(cur[c] < 0 || from[c] >= next) continue;     // (unless still switching)
+                if(p.ioEvery[cur[c]] > 0) p.untilIo[cur[c]] -= next-from[c];
+                p.rt[cur[c]] -= next-from[c];
+                busy[c] += next-from[c];
+                from[c] = next;
+            }
+            currClock = next;
+
+            boolean any = false;        // add every process that has arrived (or woken) by now
+            Arrays.fill(arrived, false);
+            while(!io.isEmpty() && io.key(io.peek()) <= currClock){ wake(io.poll()); any = true; }
+            while(in.hasNext() && in.arrival() <= currClock){ place(p.take(in)); in.next(); any = true; }
+
+            for(int c=0; c<cpus; c++){
+                int s = cur[c];
+                if(s < 0) continue;
+                if(p.rt[s] == 0){                       // the process is done
+                    q[c].onComplete(s, currClock);
+                    stats.complete(p.at[s], p.bt[s], p.first[s], currClock, p.blocked[s]);
+                    if(log != null) log.complete(c, currClock, p.id[s], waiting());
+                    p.release(s);
+                    free(c);
+                }else if(end[c] == currClock && p.ranFor(s, 0)) block(c, s);   // it waits for I/O
+                else if(end[c] == currClock) requeue(c, s);  // its slice ran out
+            }
+            if(!preemptive || !any) continue;
+            // the CPUs freed above take their work first, then the arrivals may preempt
+            //   the processes still running on CPUs whose queue they arrived in (a CPU that
+            //   is switching to a process finishes the switch first)
+            for(int c=0; c<cpus; c++) ran[c] = cur[c] >= 0 && from[c] <= currClock;
+            for(int c=0; c<cpus; c++) if(cur[c] < 0) dispatch(c);
+            for(int c=0; c<cpus; c++){
+                if(!ran[c] || !arrived[global ? 0 : c] || !q[c].preempts(cur[c], currClock)) continue;
+                requeue(c, cur[c]);
+                dispatch(c);    // right away, so the next CPU sees the queue without it
+            }
+        }
+        stats.finish(busy, currClock, migrations);
+        return stats;
+    }
+
+    // Post: queues a process that just arrived, on the CPU the balance mode chooses
+    private void place(int s){
+        int c = 0;
+        if(mode.equals("balanced")){
+            int least = Integer.MAX_VALUE;  // fewest processes queued or running on a CPU
+            for(int i=0; i<cpus; i++){
+                int load = queued[i]+(cur[i] >= 0 ? 1 : 0);
+                if(load < least){ least = load; c = i; }
+            }
+        }else if(!global) c = (int)(p.order[s]%cpus);  // dealt out in turn
+        q[c].onArrival(s, currClock);
+        queued[c]++;
+        arrived[c] = true;
+    }
+
+    // Post: queues a process whose I/O just completed, on the CPU it last ran on
+    private void wake(int s){
+        int c = global ? 0 : last[s];
+        q[c].onWake(s, currClock);
+        queued[c]++;
+        arrived[c] = true;
+    }
+
+    // Post: CPU c stops running process s, which is blocked until its I/O completes
+    private void block(int c, int s){
+        p.left[s] = currClock;
+        q[c].onBlock(s, currClock);
+        io.add(s, currClock+p.ioWait[s], p.order[s]);
+        free(c);
+        if(log != null) log.block(c, currClock, p.id[s], waiting());
+    }
+
+    // Post: CPU c stops running process s, which goes back in its queue
+    private void requeue(int c, int s){
+        p.left[s] = currClock;
+        q[c].onPreempt(s, currClock);
+        queued[global ? 0 : c]++;
+        free(c);
+        if(log != null) log.preempt(c, currClock, p.id[s], waiting());
+    }
+
+    // Post: CPU c is free
+    private void free(int c){
+        cur[c] = -1;
+        running--;
+    }
+
+    // Pre: CPU c is free; Post: it runs the next process from its queue (or stolen from the
+    //        busiest queue in stealing mode), if there is one
+    private void dispatch(int c){
+        int src = global ? 0 : c;   // queue the process comes from
+        if(q[src].isEmpty()){
+            if(!mode.equals("stealing")) return;
+            int most = 0;
+            for(int i=0; i<cpus; i++) if(queued[i] > most){ most = queued[i]; src = i; }
+            if(most == 0) return;   // nothing to steal
+        }
+        int s = q[src].pickNext(currClock);
+        queued[src]--;
+        if(q[src] != q[c]) q[c].adopt(s, q[src], currClock);  // stolen from another queue
+        long slice = q[c].slice(s, currClock);  // set when it is picked, before any switch
+        boolean cold = p.first[s] < 0;
+        if(p.first[s] < 0) p.first[s] = currClock;     // first time it gets the CPU
+        if(s >= last.length){
+            int old = last.length;
+            last = Arrays.copyOf(last, p.capacity());
+            Arrays.fill(last, old, last.length, -1);
+        }
+        if(p.first[s] < currClock && last[s] != c){     // it ran on another CPU
+            migrations++;
+            cold = true;
+        }
+        last[s] = c;
+        cur[c] = s;
+        from[c] = currClock;
+        if(p.order[s] != prev[c]){  // a context switch: the CPU is busy with it before the process runs
+            long t = cost.cost(cold, currClock-p.left[s]);
+            stats.switched(t);
+            prev[c] = p.order[s];
+            busy[c] += t;
+            from[c] += t;
+        }
+        end[c] = from[c]+p.runFor(s, slice);
+        running++;
+        if(log != null) log.dispatch(c, currClock, p.id[s], waiting());
+    }
+
+    // Post: returns the number of processes waiting in every queue
+    private int waiting(){
+        int n = 0;
+        for(int c=0; c<(global ? 1 : cpus); c++) n += queued[c];
+        return n;
+    }
+
+    // Pre: passed a stream, a number of CPUs and a CPU number
+    // Post: returns a stream of the processes of in dealt to that CPU (every cpus-th one,
+    //         in order of arrival, starting with the cpu-th)
+    static ProcessStream share(ProcessStream in, int cpus, int cpu){
+        for(int i=0; i<cpu && in.hasNext(); i++) in.next();
+        return new ProcessStream(){
+            @Override public boolean hasNext(){ return in.hasNext(); }
+            @Override public long arrival(){ return in.arrival(); }
+            @Override public long burst(){ return in.burst(); }
+            @Override public long id(){ return in.id(); }
+            @Override public int priority(){ return in.priority(); }
+            @Override public long ioEvery(){ return in.ioEvery(); }
+            @Override public long ioWait(){ return in.ioWait(); }
+            @Override public void next(){ for(int i=0; i<cpus && in.hasNext(); i++) in.next(); }
+        };
+    }
+}
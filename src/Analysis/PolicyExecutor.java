@@ -0,0 +1,330 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/* =====================================================================================
+// PolicyExecutor is an ExecutorService whose ready queue is a Scheduler, so the policies
+//   that are simulated can be tried on real work: a pool of worker threads picks tasks,
+//   and runs them for their slices, in the order the scheduler says.
+// Time is counted in ticks of tickNanos nanoseconds since the executor started, so the
+//   scheduler sees the same units as in a simulation.
+// A CpuTask declares its burst (in ticks) and does its work a slice at a time: a worker
+//   runs it for at most its slice, then gives it back to the scheduler (round robin), and a
+//   preemptive scheduler (SRTF) is asked at every tick of work after a task arrives whether
+//   the running one should stop. Arrivals are numbered, and every worker keeps the number
+//   it last asked about, so each running task is asked about every arrival, as every CPU
+//   is in MultiCoreSimulator. So tasks yield cooperatively, at tick boundaries.
+// A plain Runnable (execute) cannot be split: it declares no burst (so it counts as the
+//   longest task), and runs to completion once picked.
+// The scheduler is only used with the lock held, and is shared by every worker just as in
+//   MultiCoreSimulator's global mode.
+// Completed tasks are counted in a RunStats (times in ticks, waiting time being the time a
+//   task was not running), for comparing with the simulation.
+   ===================================================================================== */
+public class PolicyExecutor extends AbstractExecutorService {
+    // A piece of CPU-bound work that can be done a slice at a time
+    public interface CpuTask {
+        // Pre: passed ticks > 0, no more than what is left of the declared burst
+        // Post: that much of the work is done
+        void work(long ticks);
+    }
+
+    static volatile long sink;      // keeps the work of spin from being optimized away
+
+    final Scheduler sch;            // the policy
+    final long tickNanos;           // length of a tick
+    final long start = System.nanoTime();   // time 0
+    final Simulator.Slots p = new Simulator.Slots();
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition ready = lock.newCondition();    // a task was queued, or shutdown
+    final Condition idle = lock.newCondition();     // the workers have all stopped
+    final Thread [] workers;
+    final long [] busy;             // nanoseconds each worker spent running tasks
+    final RunStats stats = new RunStats();
+    Object [] tasks = new Object[16];       // the CpuTask or Runnable in each slot
+    CompletableFuture<?> [] done = new CompletableFuture<?>[16];    // the future of each slot
+    long [] ran = new long[16];     // nanoseconds each slot has been running
+    volatile long arrivals = 0;     // tasks that have arrived (each worker asks preempts when it changes)
+    boolean shutdown = false;
+    boolean stopped = false;        // shutdownNow was called: running tasks are not requeued
+    int live;                       // workers still running
+    long end = 0;                   // tick the last task completed
+
+/* =====================================================================================
+// Pre:  passed a fresh scheduler, the number of worker threads > 0 and the length of a
+//         tick in nanoseconds > 0
+// Post: starts the workers, which wait for tasks
+   ===================================================================================== */
+    public PolicyExecutor(Scheduler sch, int threads, long tickNanos){
+        if(threads <= 0) throw new IllegalArgumentException("Number of threads must be > 0");
+        if(tickNanos <= 0) throw new IllegalArgumentException("Tick must be > 0");
+        this.sch = sch;
+        this.tickNanos = tickNanos;
+        sch.init(p);
+        workers = new Thread[threads];
+        busy = new long[threads];
+        live = threads;
+        for(int w=0; w<threads; w++){
+            final int id = w;
+            workers[w] = new Thread(() -> work(id), "policy-worker-"+w);
+            workers[w].start();
+        }
+    }
+
+    // Post: returns the ticks since the executor started
+    public long clock(){ return (System.nanoTime()-start)/tickNanos; }
+
+    // Pre: passed a task, its burst in ticks (> 0) and its priority
+    // Post: queues it with the scheduler; returns a future completed when it has done its burst
+    public Future<Void> submit(CpuTask task, long burst, int priority){
+        if(burst <= 0) throw new IllegalArgumentException("Burst must be > 0");
+        return queue(task, burst, priority);
+    }
+
+    @Override public void execute(Runnable task){ queue(Objects.requireNonNull(task), Integer.MAX_VALUE, 0); }
+
+    // Post: the task is in a slot and queued; returns its future
+    private CompletableFuture<Void> queue(Object task, long burst, int priority){
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        lock.lock();
+        try{
+            if(shutdown) throw new RejectedExecutionException("Executor is shut down");
+            long now = clock();
+            int s = p.take(now, burst, p.arrived, priority);
+            if(s >= tasks.length){
+                tasks = Arrays.copyOf(tasks, p.capacity());
+                done = Arrays.copyOf(done, p.capacity());
+                ran = Arrays.copyOf(ran, p.capacity());
+            }
+            tasks[s] = task;
+            done[s] = f;
+            ran[s] = 0;
+            sch.onArrival(s, now);
+            arrivals++;     // (only written with the lock held)
+            ready.signal();
+        }finally{
+            lock.unlock();
+        }
+        return f;
+    }
+
+/* =====================================================================================
+// Pre:  passed the number of the worker running it
+// Post: returns when the executor is shut down and nothing is queued
+//       picks a task, runs its slice (stopping early if a preemptive scheduler says so),
+//         then gives it back to the scheduler or completes it, over and over
+   ===================================================================================== */
+    private void work(int w){
+        lock.lock();
+        try{
+            int last = -1;          // slot this worker ran last
+            long seen;              // arrivals this worker's running task was asked about
+            while(true){
+                while(sch.isEmpty() && !shutdown) ready.awaitUninterruptibly();
+                if(sch.isEmpty()) break;
+                long now = clock();
+                seen = arrivals;    // the pick has considered them
+                int s = sch.pickNext(now);
+                long slice = Math.min(sch.slice(s, now), p.rt[s]);
+                if(p.first[s] < 0) p.first[s] = now;
+                if(s != last) stats.switched(0);
+                last = s;
+                Object task = tasks[s];
+                long rt = p.rt[s];
+                boolean preemptive = sch.preemptive();
+                lock.unlock();
+                long from = System.nanoTime(), did = 0;
+                Throwable failed = null;
+                try{
+                    if(task instanceof CpuTask){
+                        CpuTask t = (CpuTask)task;
+                        while(did < slice){     // a tick at a time if it may be preempted
+                            long n = preemptive ? 1 : slice-did;
+                            t.work(n);
+                            did += n;
+                            if(preemptive && arrivals != seen && did < slice){
+                                seen = arrivals;
+                                if(stop(s, did)) break;
+                            }
+                        }
+                    }else{
+                        ((Runnable)task).run();
+                        did = rt;
+                    }
+                }catch(Throwable ex){   // the task is over either way
+                    failed = ex;
+                }
+                long took = System.nanoTime()-from;
+                lock.lock();
+                busy[w] += took;
+                ran[s] += took;
+                p.rt[s] -= did;
+                now = clock();
+                if(p.rt[s] > 0 && failed == null && stopped){  // cancelled by shutdownNow
+                    done[s].cancel(false);
+                    tasks[s] = done[s] = null;
+                    p.release(s);
+                    continue;
+                }
+                if(p.rt[s] > 0 && failed == null){
+                    p.left[s] = now;
+                    sch.onPreempt(s, now);
+                    continue;
+                }
+                sch.onComplete(s, now);
+                stats.complete(p.at[s], Math.min(ran[s]/tickNanos, now-p.at[s]), p.first[s], now);
+                end = Math.max(end, now);
+                CompletableFuture<?> f = done[s];
+                tasks[s] = done[s] = null;
+                p.release(s);
+                if(failed == null) f.complete(null);
+                else f.completeExceptionally(failed);
+            }
+            if(--live == 0){        // the last worker to stop closes the run
+                finish();
+                idle.signalAll();
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    // Pre: passed the running slot and the ticks of work it did in this slice, after a task
+    //        arrived that its worker has not asked about
+    // Post: returns true iff the scheduler says it should stop (its remaining time is brought
+    //         up to date to ask, then put back)
+    private boolean stop(int s, long did){
+        lock.lock();
+        try{
+            p.rt[s] -= did;
+            boolean stop = sch.preempts(s, clock());
+            p.rt[s] += did;
+            return stop;
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    @Override public void shutdown(){
+        lock.lock();
+        try{
+            shutdown = true;
+            ready.signalAll();
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    // Post: the tasks still queued are cancelled and returned (the plain Runnables among
+    //         them; a CpuTask is not a Runnable), and the running ones finish their slices,
+    //         then are cancelled too if they have work left instead of being queued again
+    //         (only a CpuTask can have work left, as a plain Runnable runs to completion, so
+    //         none of them belongs in the list returned)
+    @Override public List<Runnable> shutdownNow(){
+        List<Runnable> left = new ArrayList<>();
+        lock.lock();
+        try{
+            shutdown = stopped = true;
+            while(!sch.isEmpty()){
+                int s = sch.pickNext(clock());
+                if(tasks[s] instanceof Runnable) left.add((Runnable)tasks[s]);
+                done[s].cancel(false);
+                tasks[s] = done[s] = null;
+                p.release(s);
+            }
+            ready.signalAll();
+        }finally{
+            lock.unlock();
+        }
+        return left;
+    }
+
+    @Override public boolean isShutdown(){
+        lock.lock();
+        try{ return shutdown; }finally{ lock.unlock(); }
+    }
+
+    @Override public boolean isTerminated(){
+        lock.lock();
+        try{ return live == 0; }finally{ lock.unlock(); }
+    }
+
+    @Override public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException{
+        long left = unit.toNanos(timeout);
+        lock.lock();
+        try{
+            while(live > 0){
+                if(left <= 0) return false;
+                left = idle.awaitNanos(left);
+            }
+            return true;
+        }finally{
+            lock.unlock();
+        }
+    }
+
+/* =====================================================================================
+// Pre:  the executor has terminated
+// Post: returns the statistics of the tasks it ran, in ticks, with each worker's busy time
+//         as a CPU's and the time until the last task completed as the total (the same
+//         statistics however often it is called)
+   ===================================================================================== */
+    public RunStats stats(){
+        lock.lock();
+        try{
+            if(live > 0) throw new IllegalStateException("Executor has not terminated");
+            return stats;
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    // Pre: the lock is held and the last worker has stopped
+    // Post: the run is counted in stats, once
+    private void finish(){
+        long [] b = new long[busy.length];
+        for(int w=0; w<b.length; w++) b[w] = Math.min(busy[w]/tickNanos, end);
+        stats.finish(b, end, 0);
+    }
+
+/* =====================================================================================
+// Pre:  passed the length of a tick in nanoseconds > 0
+// Post: returns a CpuTask that spins for about that long per tick of work (measured on
+//         this thread, taking the fastest of a few tries so that being descheduled does
+//         not count)
+   ===================================================================================== */
+    public static CpuTask spinner(long tickNanos){
+        long n = 1 << 16, best = Long.MAX_VALUE;
+        for(int i=0; i<2000; i++) spin(n);     // let the JIT compile it first
+        for(int i=0; i<20; i++){
+            long t = System.nanoTime();
+            spin(n);
+            best = Math.min(best, System.nanoTime()-t);
+        }
+        final long perTick = Math.max(1, n*tickNanos/Math.max(best, 1));
+        return ticks -> spin(ticks*perTick);
+    }
+
+    // Post: does n steps of pointless arithmetic
+    static void spin(long n){
+        long x = sink;
+        for(long i=0; i<n; i++) x = x*6364136223846793005L+1442695040888963407L;
+        sink = x;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/* =====================================================================================
+// ProcessStore holds a workload off the Java heap, in order of arrival, for workloads too
+//   big for a ProcessTable (whose rows are Java array indices, so at most 2^31 of them)
+// Every process is a record of RECORD bytes in a direct buffer: long arrival time, long
+//   burst time, long ID. Records are kept in chunks of CHUNK records, since one buffer is
+//   limited to 2 GB, so the store can hold billions of them. Its memory is allocated once,
+//   RECORD bytes per process, and the garbage collector never scans it (it is freed when
+//   the store is no longer reachable).
+// The store only holds the workload; runs read it through streams (any number at once,
+//   from different threads) and keep only their statistics, not per-process results.
+// Direct memory is limited by -XX:MaxDirectMemorySize (the heap size by default).
+   ===================================================================================== */
+public class ProcessStore {
+    public static final int RECORD = 24;            // bytes per process
+    static final int CHUNK = 1 << 26;               // records per buffer (1.5 GB)
+
+    final long count;               // number of processes
+    final ByteBuffer [] chunks;     // chunk c holds records c*CHUNK .. (c+1)*CHUNK-1
+
+    // Pre: passed the number of processes >= 0; Post: an empty store of that many records
+    ProcessStore(long count){
+        this.count = count;
+        chunks = new ByteBuffer[Math.toIntExact((count+CHUNK-1)/CHUNK)];
+        for(int c=0; c<chunks.length; c++)
+            chunks[c] = ByteBuffer.allocateDirect((int)Math.min(CHUNK, count-(long)c*CHUNK)*RECORD);
+    }
+
+/* =====================================================================================
+// Pre:  passed len >= 0, maxBurst > minBurst >= 0, maxArrival > 0 and a seed
+// Post: returns a store of the same processes makeNewProcess(len, minBurst, maxBurst,
+//         maxArrival, seed) makes (for any len), in the order ProcessTable.stream gives
+//         them: by arrival time, then ID (the row)
+//       the processes are generated twice from the seed: once to count the arrivals at
+//         each time, then again to put each record straight into its place (a counting
+//         sort), so nothing but the store and one counter per arrival time is allocated
+   ===================================================================================== */
+    public static ProcessStore generate(long len, int minBurst, int maxBurst, int maxArrival, long seed){
+        ProcessStore store = new ProcessStore(len);
+        long [] next = new long[maxArrival];    // where the next process arriving at each time goes
+        SplittableRandom rand = new SplittableRandom(seed);
+        for(long i=0; i<len; i++){
+            rand.nextInt(maxBurst-minBurst);    // (the burst time, drawn first as in makeNewProcess)
+            next[rand.nextInt(maxArrival)]++;
+        }
+        long start = 0;
+        for(int t=0; t<maxArrival; t++){
+            long n = next[t];
+            next[t] = start;
+            start += n;
+        }
+        rand = new SplittableRandom(seed);
+        for(long i=0; i<len; i++){
+            long bt = rand.nextInt(maxBurst-minBurst)+minBurst;
+            int at = rand.nextInt(maxArrival);
+            store.put(next[at]++, at, bt, i);
+        }
+        return store;
+    }
+
+    public long size(){ return count; }     // number of processes
+
+    // Pre: passed a record number 0 <= i < size(); Post: returns that record's field
+    public long arrival(long i){ return chunks[(int)(i/CHUNK)].getLong((int)(i%CHUNK)*RECORD); }
+    public long burst(long i){ return chunks[(int)(i/CHUNK)].getLong((int)(i%CHUNK)*RECORD+8); }
+    public long id(long i){ return chunks[(int)(i/CHUNK)].getLong((int)(i%CHUNK)*RECORD+16); }
+
+    // Post: record i holds the process
+    void put(long i, long arrival, long burst, long id){
+        ByteBuffer chunk = chunks[(int)(i/CHUNK)];
+        int off = (int)(i%CHUNK)*RECORD;
+        chunk.putLong(off, arrival).putLong(off+8, burst).putLong(off+16, id);
+    }
+
+    // Post: returns a stream over the records in order; any number of streams can read the
+    //         store at once
+    public ProcessStream stream(){
+        return new ProcessStream(){
+            long i = 0;                         // next record
+            ByteBuffer chunk = count > 0 ? chunks[0] : null;
+            int off = 0;                        // offset of record i in chunk
+            @Override public boolean hasNext(){ return i < count; }
+            @Override public long arrival(){ return chunk.getLong(off); }
+            @Override public long burst(){ return chunk.getLong(off+8); }
+            @Override public long id(){ return chunk.getLong(off+16); }
+            @Override public void next(){
+                i++;
+                off += RECORD;
+                if(off == CHUNK*RECORD && i < count){ chunk = chunks[(int)(i/CHUNK)]; off = 0; }
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+
+/* =====================================================================================
+// A ProcessStream hands out the processes of a workload one at a time, in order of arrival
+// It works like a cursor: arrival(), burst() and id() describe the next process, and next()
+//   moves past it. Nothing is allocated per process, so a stream can be produced lazily
+//   (see WorkloadGenerator) and a workload never has to be held in memory all at once.
+// Arrival times never decrease from one process to the next.
+// A process may also wait for I/O: after every ioEvery() ticks on the CPU it blocks for
+//   ioWait() ticks, until its burst (its CPU time, not counting the waits) is done.
+   ===================================================================================== */
+public interface ProcessStream {
+    boolean hasNext();  // true iff there is another process
+    long arrival();     // arrival time of the next process (hasNext() is true)
+    long burst();       // burst time of the next process (hasNext() is true)
+    long id();          // ID of the next process (hasNext() is true)
+    default int priority(){ return 0; } // priority of the next process, if the workload has them
+    default long ioEvery(){ return 0; } // CPU time the next process runs between I/O waits, 0 if it never waits
+    default long ioWait(){ return 0; }  // time each I/O wait of the next process takes
+    void next();        // move past the next process (hasNext() is true)
+
+/* =====================================================================================
+// Pre:  passed a stream of a table's processes (see ProcessTable.stream) and a priority
+//         for every row of the table
+// Post: returns the stream with those priorities in place of its own
+   ===================================================================================== */
+    static ProcessStream withPriorities(ProcessStream in, int [] prio){
+        return new ProcessStream(){
+            @Override public boolean hasNext(){ return in.hasNext(); }
+            @Override public long arrival(){ return in.arrival(); }
+            @Override public long burst(){ return in.burst(); }
+            @Override public long id(){ return in.id(); }
+            @Override public int priority(){ return prio[(int)in.id()]; }
+            @Override public long ioEvery(){ return in.ioEvery(); }
+            @Override public long ioWait(){ return in.ioWait(); }
+            @Override public void next(){ in.next(); }
+        };
+    }
+}
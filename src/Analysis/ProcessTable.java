@@ -0,0 +1,104 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+
+/* =====================================================================================
+// ProcessTable is a workload stored as one primitive array per column (struct of arrays)
+// Process i is row i of every column. The input columns (PID, BT, AT) and the arrival index
+//   never change after the table is built, so every algorithm run on the same workload shares
+//   one table, even from different threads.
+// What a run changes (RT, CT, TaT, WT) lives in a separate State, one per run, which can be
+//   reset to reuse it for another run on the same table.
+// All times are in logical clock ticks, as longs, so a run may last any length of time.
+   ===================================================================================== */
+public class ProcessTable {
+    final int [] pid;               // process ID of each row
+    final long [] bt;               // burst time of each row
+    final long [] at;               // arrival time of each row
+    final ArrivalIndex arrivals;    // rows in order of arrival
+
+/* =====================================================================================
+// Pre:  passed the PID, burst time (> 0) and arrival time (>= 0) columns, all the same length
+// Post: builds the table (the arrays are used as they are, not copied)
+   ===================================================================================== */
+    public ProcessTable(int [] pid, long [] bt, long [] at){
+        if(pid.length != bt.length || bt.length != at.length)
+            throw new IllegalArgumentException("Columns have different lengths");
+        this.pid = pid;
+        this.bt = bt;
+        this.at = at;
+        arrivals = new ArrivalIndex(at);
+    }
+
+    public int size(){ return pid.length; }     // number of processes
+    public int pid(int i){ return pid[i]; }     // process ID of row i
+    public long bt(int i){ return bt[i]; }      // burst time of row i
+    public long at(int i){ return at[i]; }      // arrival time of row i
+    public ArrivalIndex arrivals(){ return arrivals; }
+
+    // Post: returns a new State for one run on this table, ready to use
+    public State newState(){ return new State(this); }
+
+    // Post: returns a stream of the processes of this table in order of arrival (with the
+    //         row as ID), for Simulator.run
+    public ProcessStream stream(){
+        return new ProcessStream(){
+            int a = 0;  // cursor into the arrival index
+            @Override public boolean hasNext(){ return a < arrivals.size(); }
+            @Override public long arrival(){ return arrivals.time[a]; }
+            @Override public long burst(){ return bt[arrivals.pid[a]]; }
+            @Override public long id(){ return arrivals.pid[a]; }
+            @Override public void next(){ a++; }
+        };
+    }
+
+/* =====================================================================================
+// State holds the columns one algorithm run writes: remaining, first run, completion,
+//   turnaround and waiting time of every row of its table
+   ===================================================================================== */
+    public static class State {
+        final ProcessTable table;       // table this state belongs to
+        final long [] rt, ct, tat, wt;  // remaining, completion, turnaround and waiting time
+        final long [] st;               // time of first getting the CPU, -1 until then
+
+        State(ProcessTable table){
+            this.table = table;
+            int n = table.size();
+            rt = new long[n];
+            ct = new long[n];
+            tat = new long[n];
+            wt = new long[n];
+            st = new long[n];
+            reset();
+        }
+
+        // Post: every process has its full burst remaining and no results
+        public void reset(){
+            System.arraycopy(table.bt, 0, rt, 0, rt.length);
+            Arrays.fill(ct, 0);
+            Arrays.fill(tat, 0);
+            Arrays.fill(wt, 0);
+            Arrays.fill(st, -1);
+        }
+
+        public long rt(int i){ return rt[i]; }  // remaining time of row i
+        public long ct(int i){ return ct[i]; }  // completion time of row i
+        public long tat(int i){ return tat[i]; }    // turnaround time of row i
+        public long wt(int i){ return wt[i]; }  // waiting time of row i
+        public long st(int i){ return st[i]; }  // first run time of row i (-1 if it never ran)
+    }
+}
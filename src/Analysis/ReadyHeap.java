@@ -0,0 +1,155 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+
+/* =====================================================================================
+// ReadyHeap is an indexed binary min-heap of process IDs, used as the ready queue of the
+//   shortest-first algorithms
+// Every process has a long key, normally a time, and a long tie-breaker, normally its
+//   arrival order, so processes with the same time are ordered by arrival (and so by process
+//   ID, see ArrivalIndex). Both are full longs, so neither limits how long a run may be.
+// All storage is allocated up front (one slot per process ID), so no operation allocates;
+//   adding an ID past the capacity grows the arrays (once) to fit it.
+// Since the heap knows where every process is, the key of a queued process can be changed
+//   in O(log n) (decreaseKey / update) instead of removing and re-inserting it.
+   ===================================================================================== */
+public class ReadyHeap {
+    int [] heap;    // process IDs, in heap order
+    int [] pos;     // position of each process ID in heap, -1 if it is not queued
+    long [] key;    // key of each process ID
+    long [] tie;    // tie-breaker of each process ID (compared when the keys are equal)
+    int size = 0;   // number of queued processes
+
+/* =====================================================================================
+// Pre:  passed capacity > 0, one more than the largest process ID that will be queued
+// Post: builds an empty heap
+   ===================================================================================== */
+    public ReadyHeap(int capacity){
+        heap = new int[capacity];
+        pos = new int[capacity];
+        key = new long[capacity];
+        tie = new long[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    // Post: returns true iff key k1 with tie-breaker t1 comes before key k2 with t2
+    public static boolean before(long k1, long t1, long k2, long t2){ return k1 < k2 || (k1 == k2 && t1 < t2); }
+
+    public boolean isEmpty(){ return size == 0; }
+    public int size(){ return size; }
+    public boolean contains(int p){ return p < pos.length && pos[p] >= 0; }
+    public long key(int p){ return key[p]; }        // key of process p
+    public long tie(int p){ return tie[p]; }        // tie-breaker of process p
+    public int peek(){ return heap[0]; }            // process with the smallest key (heap not empty)
+
+    // Pre: passed a process p >= 0 that is not queued and its key; Post: p is queued
+    public void add(int p, long k){ add(p, k, 0); }
+
+    // Same as above, with a tie-breaker for processes with the same key
+    public void add(int p, long k, long t){
+        if(p >= pos.length) grow(p+1);
+        key[p] = k;
+        tie[p] = t;
+        heap[size] = p;
+        pos[p] = size;
+        siftUp(size++);
+    }
+
+    // Pre: the heap is not empty; Post: removes and returns the process with the smallest key
+    public int poll(){
+        int p = heap[0];
+        remove(p);
+        return p;
+    }
+
+    // Pre: passed a queued process p; Post: p is no longer queued
+    public void remove(int p){
+        int i = pos[p], last = heap[--size];
+        pos[p] = -1;
+        if(i == size) return;   // p was the last entry
+        heap[i] = last;
+        pos[last] = i;
+        siftDown(i);
+        if(heap[i] == last) siftUp(i);
+    }
+
+    // Pre: passed a queued process p and a key <= its current key; Post: p has the new key
+    public void decreaseKey(int p, long k){
+        key[p] = k;
+        siftUp(pos[p]);
+    }
+
+    // Pre: passed a queued process p and any new key; Post: p has the new key
+    public void update(int p, long k){
+        long old = key[p];
+        key[p] = k;
+        if(k < old) siftUp(pos[p]);
+        else siftDown(pos[p]);
+    }
+
+    // Post: empties the heap
+    public void clear(){
+        for(int i=0; i<size; i++) pos[heap[i]] = -1;
+        size = 0;
+    }
+
+    // make room for process IDs up to capacity-1 (at least doubling, so growth is rare)
+    private void grow(int capacity){
+        capacity = Math.max(capacity, 2*pos.length);
+        heap = Arrays.copyOf(heap, capacity);
+        key = Arrays.copyOf(key, capacity);
+        tie = Arrays.copyOf(tie, capacity);
+        int old = pos.length;
+        pos = Arrays.copyOf(pos, capacity);
+        Arrays.fill(pos, old, capacity, -1);
+    }
+
+    // true iff process a comes before process b
+    private boolean before(int a, int b){ return key[a] < key[b] || (key[a] == key[b] && tie[a] < tie[b]); }
+
+    // move the entry at i up until its parent comes first
+    private void siftUp(int i){
+        int p = heap[i];
+        while(i > 0){
+            int parent = (i-1) >>> 1;
+            int q = heap[parent];
+            if(!before(p, q)) break;
+            heap[i] = q;
+            pos[q] = i;
+            i = parent;
+        }
+        heap[i] = p;
+        pos[p] = i;
+    }
+
+    // move the entry at i down until it comes before both children
+    private void siftDown(int i){
+        int p = heap[i];
+        int half = size >>> 1;
+        while(i < half){
+            int child = 2*i+1, right = child+1;
+            if(right < size && before(heap[right], heap[child])) child = right;
+            int q = heap[child];
+            if(!before(q, p)) break;
+            heap[i] = q;
+            pos[q] = i;
+            i = child;
+        }
+        heap[i] = p;
+        pos[p] = i;
+    }
+}
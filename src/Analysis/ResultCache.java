@@ -0,0 +1,164 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.*;
+import java.util.*;
+
+/* =====================================================================================
+// ResultCache keeps the statistics of simulation runs in a directory, so a run that has
+//   been done before (the same workload and seed, policy and options) is loaded instead of
+//   simulated again
+// A run is described by a key string naming everything its results depend on, plus the
+//   version of the simulator (SIMULATOR). Its entry is the file named by the SHA-256 of the
+//   key, holding the key (to check) and the RunStats (see RunStats.write):
+//     int magic ("SCRC"), int version, the key (UTF), the statistics
+// The cache holds at most maxBytes of entries. The least recently used ones are removed
+//   first; use is kept as the entry's modification time, so it carries over between runs.
+// Entries are written to a temporary file and renamed, so a reader never sees half of one;
+//   an entry that cannot be read is treated as missing and removed.
+   ===================================================================================== */
+public class ResultCache {
+    public static final int MAGIC = 0x43524353;     // "SCRC"
+    public static final int VERSION = 3;
+    // version of the simulation itself: change it whenever a change to the simulator or the
+    //   policies changes results, so entries made before are not used
+    public static final String SIMULATOR = "1";
+    static final String SUFFIX = ".stats";
+
+    final Path dir;                 // directory the entries are in
+    final long maxBytes;            // most bytes of entries to keep
+    // size of every entry by file name, least recently used first
+    final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    long bytes = 0;                 // size of all the entries
+    long hits = 0, misses = 0;      // lookups that found an entry and that did not
+
+/* =====================================================================================
+// Pre:  passed the directory of the cache (created if it does not exist) and the most bytes
+//         of entries to keep (> 0)
+// Post: opens the cache, ordering the entries already there by when they were last used
+   ===================================================================================== */
+    public ResultCache(Path dir, long maxBytes) throws IOException{
+        if(maxBytes <= 0) throw new IllegalArgumentException("Cache size must be > 0");
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        List<Path> found = new ArrayList<>();
+        Map<Path, FileTime> used = new HashMap<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*"+SUFFIX)){
+            for(Path f: files){
+                found.add(f);
+                used.put(f, Files.getLastModifiedTime(f));
+            }
+        }
+        found.sort(Comparator.comparing(used::get));
+        for(Path f: found){
+            long size = Files.size(f);
+            entries.put(f.getFileName().toString(), size);
+            bytes += size;
+        }
+        evict();
+    }
+
+    // Pre: passed the key of a run
+    // Post: returns its statistics if they are in the cache (marking the entry used), else null
+    public synchronized RunStats get(String key){
+        String name = name(key);
+        if(entries.get(name) == null){ misses++; return null; }    // (marks it used if there)
+        Path f = dir.resolve(name);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(f)))){
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key))
+                throw new IOException(f+" is not the entry of "+key);
+            RunStats s = RunStats.read(in);
+            Files.setLastModifiedTime(f, FileTime.fromMillis(System.currentTimeMillis()));
+            hits++;
+            return s;
+        }catch(IOException ex){     // unreadable: forget it, it is written again after the run
+            remove(name);
+            misses++;
+            return null;
+        }
+    }
+
+    // Pre: passed the key of a run and its statistics
+    // Post: the statistics are in the cache as the most recently used entry, and the least
+    //         recently used entries are removed while the cache is over its size
+    //       throws UncheckedIOException if the entry cannot be written
+    public synchronized void put(String key, RunStats stats){
+        String name = name(key);
+        Path f = dir.resolve(name), tmp = dir.resolve(name+".tmp");
+        try{
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))){
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                stats.write(out);
+            }
+            Files.move(tmp, f, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            long size = Files.size(f);
+            Long old = entries.put(name, size);
+            bytes += size-(old == null ? 0 : old);
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        evict();
+    }
+
+    public synchronized long hits(){ return hits; }
+    public synchronized long misses(){ return misses; }
+    public synchronized long bytes(){ return bytes; }
+
+    // remove the least recently used entries until the cache fits in maxBytes
+    private void evict(){
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while(bytes > maxBytes && eldest.hasNext()){
+            Map.Entry<String, Long> e = eldest.next();    // (get() would reorder the map)
+            bytes -= e.getValue();
+            eldest.remove();
+            try{
+                Files.deleteIfExists(dir.resolve(e.getKey()));
+            }catch(IOException ex){
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    // remove the entry with the given file name
+    private void remove(String name){
+        Long size = entries.remove(name);
+        if(size != null) bytes -= size;
+        try{
+            Files.deleteIfExists(dir.resolve(name));
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Post: returns the file name of the entry of key: the hex SHA-256 of the key
+    static String name(String key){
+        try{
+            byte [] h = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for(byte b: h) hex.append(String.format("%02x", b));
+            return hex.append(SUFFIX).toString();
+        }catch(NoSuchAlgorithmException ex){    // every Java platform has SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+
+/* =====================================================================================
+// RunStats folds the results of finished processes into aggregate statistics, so a run
+//   does not have to keep any per-process results
+// Besides totals, it keeps histograms of the waiting, turnaround and response time (from
+//   arrival to first getting the CPU) of every process, for percentiles: averages hide the
+//   tail, such as long jobs starving under SJF.
+// Runs on several CPUs (see MultiCoreSimulator) also keep the busy time of every CPU and
+//   how often processes moved between CPUs.
+// Waiting time is time spent ready but not running: time a process spent blocked for I/O
+//   is counted on its own (sumBlocked), not as waiting.
+// Every run also counts its context switches and the time the CPUs spent switching (see
+//   SwitchCost), which is busy time but no process makes progress in it.
+// Stats from different runs (epochs, threads) can be combined with merge, and written to
+//   and read back from a binary stream (see Checkpoint).
+// All times are in logical clock ticks.
+   ===================================================================================== */
+public class RunStats {
+    long count = 0;         // processes completed
+    long idle = 0;          // time the CPU spent idle
+    long total = 0;         // time from 0 until the last process completed
+    // (the totals are doubles, like LatencyHistogram's sum: a long overflows once there are
+    //   enough processes with 64-bit times, and the averages only need the magnitude)
+    double sumWait = 0;     // total waiting time of all completed processes
+    double sumTat = 0;      // total turnaround time of all completed processes
+    double sumBlocked = 0;  // total time all completed processes spent blocked for I/O
+    long maxWait = 0;       // longest waiting time of any completed process
+    int runs = 0;           // number of runs folded in (for averaging idle and total)
+    long [] busy = null;    // busy time of each CPU, null for runs on one CPU
+    long migrations = 0;    // times a process resumed on a different CPU than it last ran on
+    long switches = 0;      // context switches
+    long overhead = 0;      // time spent switching, summed over the CPUs
+    final LatencyHistogram wait = new LatencyHistogram();       // waiting times
+    final LatencyHistogram turnaround = new LatencyHistogram(); // turnaround times
+    final LatencyHistogram response = new LatencyHistogram();   // response times
+
+    // Pre: passed the arrival, burst, first run and completion time of a finished process
+    // Post: the process is counted in the statistics
+    public void complete(long at, long bt, long firstRun, long ct){
+        complete(at, bt, firstRun, ct, 0);
+    }
+
+    // Same as above, for a process that also spent the given time blocked for I/O
+    public void complete(long at, long bt, long firstRun, long ct, long blocked){
+        long tat = ct-at, wt = tat-bt-blocked;
+        count++;
+        sumTat += tat;
+        sumBlocked += blocked;
+        sumWait += wt;
+        if(wt > maxWait) maxWait = wt;
+        wait.record(wt);
+        turnaround.record(tat);
+        response.record(firstRun-at);
+    }
+
+    // Pre: passed a number of context switches and what they cost in all
+    // Post: the switches are counted
+    public void switched(long n, long cost){
+        switches += n;
+        overhead += cost;
+    }
+
+    // Pre: passed a span of time, from <= to, and the number of CPUs that were idle for all
+    //        of it, as the run gets to it
+    // Post: nothing; the idle time of a run is counted by finish, but statistics that watch
+    //         the run as it goes (see WindowedStats) need to know when it was idle
+    public void idled(long from, long to, int cpus){}
+
+    // Pre: passed the time a context switch cost; Post: the switch is counted
+    public void switched(long cost){
+        switches++;
+        overhead += cost;
+    }
+
+    // Pre: passed the idle time and total time of a run that has finished
+    // Post: the run is counted in the statistics
+    public void finish(long idle, long total){
+        this.idle += idle;
+        this.total += total;
+        runs++;
+    }
+
+    // Pre: passed the busy time of every CPU, the total time and the number of migrations
+    //        of a run on several CPUs that has finished
+    // Post: the run is counted in the statistics (its idle time is the time each CPU was
+    //         not busy, summed over the CPUs)
+    public void finish(long [] busy, long total, long migrations){
+        long idle = 0;
+        for(long b: busy) idle += total-b;
+        finish(idle, total);
+        if(this.busy == null) this.busy = new long[busy.length];
+        for(int c=0; c<busy.length; c++) this.busy[c] += busy[c];
+        this.migrations += migrations;
+    }
+
+    // Post: adds everything counted in o to these statistics; returns this
+    public RunStats merge(RunStats o){
+        count += o.count;
+        idle += o.idle;
+        total += o.total;
+        sumWait += o.sumWait;
+        sumTat += o.sumTat;
+        sumBlocked += o.sumBlocked;
+        maxWait = Math.max(maxWait, o.maxWait);
+        runs += o.runs;
+        wait.merge(o.wait);
+        turnaround.merge(o.turnaround);
+        response.merge(o.response);
+        if(o.busy != null){
+            if(busy == null) busy = new long[o.busy.length];
+            for(int c=0; c<busy.length; c++) busy[c] += o.busy[c];
+        }
+        migrations += o.migrations;
+        switches += o.switches;
+        overhead += o.overhead;
+        return this;
+    }
+
+    public long count(){ return count; }
+    public double avgWait(){ return count == 0 ? 0 : sumWait/count; }
+    public double avgTat(){ return count == 0 ? 0 : sumTat/count; }
+    public double avgBlocked(){ return count == 0 ? 0 : sumBlocked/count; }
+    public long maxWait(){ return maxWait; }
+    public int cpus(){ return busy == null ? 1 : busy.length; }
+    public long migrations(){ return migrations; }
+    public long switches(){ return switches; }
+    // time spent switching, averaged over the runs folded in
+    public double avgOverhead(){ return (double)overhead/Math.max(runs, 1); }
+    // fraction of the total time CPU c was busy
+    public double utilization(int c){ return total == 0 ? 0 : (double)busy[c]/total; }
+    // busiest CPU's busy time over the average CPU's: 1 when the load is perfectly balanced
+    public double imbalance(){
+        if(busy == null) return 1;
+        long max = 0, sum = 0;
+        for(long b: busy){ max = Math.max(max, b); sum += b; }
+        return sum == 0 ? 1 : (double)max*busy.length/sum;
+    }
+    public LatencyHistogram waitTimes(){ return wait; }
+    public LatencyHistogram turnaroundTimes(){ return turnaround; }
+    public LatencyHistogram responseTimes(){ return response; }
+
+    // Post: writes the statistics to out
+    public void write(DataOutput out) throws IOException{
+        for(long v: new long[]{count, idle, total, maxWait, runs, migrations, switches, overhead})
+            out.writeLong(v);
+        for(double v: new double[]{sumWait, sumTat, sumBlocked}) out.writeDouble(v);
+        out.writeInt(busy == null ? -1 : busy.length);
+        if(busy != null) for(long b: busy) out.writeLong(b);
+        wait.write(out);
+        turnaround.write(out);
+        response.write(out);
+    }
+
+    // Pre: passed input where statistics were written with write
+    // Post: returns the statistics read from it; throws IOException if they are not any
+    public static RunStats read(DataInput in) throws IOException{
+        RunStats s = new RunStats();
+        s.count = in.readLong();
+        s.idle = in.readLong();
+        s.total = in.readLong();
+        s.maxWait = in.readLong();
+        s.runs = (int)in.readLong();
+        s.migrations = in.readLong();
+        s.switches = in.readLong();
+        s.overhead = in.readLong();
+        s.sumWait = in.readDouble();
+        s.sumTat = in.readDouble();
+        s.sumBlocked = in.readDouble();
+        int cpus = in.readInt();
+        if(cpus > 0){
+            s.busy = new long[cpus];
+            for(int c=0; c<cpus; c++) s.busy[c] = in.readLong();
+        }
+        s.wait.merge(LatencyHistogram.read(in));
+        s.turnaround.merge(LatencyHistogram.read(in));
+        s.response.merge(LatencyHistogram.read(in));
+        return s;
+    }
+
+    // Post: returns Double array containing: [idle time, total time, average wait time],
+    //         with idle and total time averaged over the runs folded in
+    public double [] toArray(){
+        int r = Math.max(runs, 1);
+        double [] result = {(double)idle/r, (double)total/r, avgWait()};
+        return result;
+    }
+}
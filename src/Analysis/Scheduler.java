@@ -0,0 +1,97 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+
+/* =====================================================================================
+// Scheduler is a scheduling policy: it owns the ready queue and decides which process runs
+//   next and for how long. Simulator.run calls its hooks as the simulation advances; the
+//   Scheduler never moves the clock itself.
+// Processes are identified by their slot in the Simulator.Slots passed to init, where the
+//   scheduler can read their arrival order, remaining time, priority, etc.
+// A run goes: init, then for every process onArrival, and any number of times
+//   pickNext -> slice -> (preempts at arrivals, if preemptive) -> onPreempt or onComplete
+//   until every process has completed. A process that waits for I/O leaves the CPU with
+//   onBlock instead, and comes back with onWake when its I/O is done.
+// A process is only queued while it waits: pickNext takes it out of the queue, and onPreempt
+//   puts it back. So the same Scheduler works for one CPU or for several CPUs sharing it
+//   (see MultiCoreSimulator), where several processes run at once.
+// A Scheduler holds the state of one run, so every run needs its own (see
+//   SchedulingAlgorithms.scheduler).
+   ===================================================================================== */
+public interface Scheduler {
+    // Pre: passed the slots the run will use; Post: the scheduler is ready for a new run
+    void init(Simulator.Slots p);
+
+    // Pre: passed the slot of a process that has just arrived and the time; Post: it is queued
+    void onArrival(int s, long clock);
+
+    // Post: returns true iff no process is waiting to run
+    boolean isEmpty();
+
+    // Pre: the scheduler is not empty
+    // Post: removes and returns the slot of the process to run next
+    int pickNext(long clock);
+
+    // Pre: passed the process about to run and the time
+    // Post: returns the longest it may run before the scheduler gets control back (it stops
+    //         early if it completes); by default it runs until it completes
+    default long slice(int s, long clock){ return Long.MAX_VALUE; }
+
+    // Post: returns true iff arrivals may preempt the running process; only then does the
+    //         simulation stop at every arrival to ask preempts (otherwise processes that
+    //         arrive during a slice are queued when it ends, which is cheaper)
+    default boolean preemptive(){ return false; }
+
+    // Pre: passed the running process and the time, right after processes arrived while it ran
+    //        (its remaining time is up to date); only called if preemptive
+    // Post: returns true iff it should stop running now
+    default boolean preempts(int s, long clock){ return false; }
+
+    // Pre: passed a process that stopped with time remaining (its slice ran out or preempts
+    //        said so) and the time; Post: it is queued again
+    void onPreempt(int s, long clock);
+
+    // Pre: passed a process that has just completed and the time; Post: the scheduler has
+    //        forgotten it (by default there is nothing to forget)
+    default void onComplete(int s, long clock){}
+
+    // Pre: passed the process that was running, which has just stopped to wait for I/O with
+    //        time remaining, and the time
+    // Post: the scheduler has noted that it cannot run until onWake (by default there is
+    //         nothing to note)
+    default void onBlock(int s, long clock){}
+
+    // Pre: passed a process whose I/O has just completed (onBlock was called for it), and the
+    //        time; only preempts the running process if preemptive, as an arrival does
+    // Post: it is queued again (by default as if its slice had run out)
+    default void onWake(int s, long clock){ onPreempt(s, clock); }
+
+    // Pre: passed the process just picked (it has not run yet), the time, the time of the
+    //        next arrival (Long.MAX_VALUE if there is none) and the statistics of the run;
+    //        only called on one CPU with free context switches
+    // Post: if the scheduler would run the same processes round after round until then, it
+    //         may run whole rounds at once: it takes what they run off their remaining times,
+    //         counts their context switches in stats and returns the time they took, after
+    //         which s is picked again as it was. The result must be the same as running them
+    //         one slice at a time. By default it skips nothing and returns 0.
+    default long skipRounds(int s, long clock, long until, RunStats stats){ return 0; }
+
+    // Pre: passed a process that from, another scheduler of the same policy, just gave up
+    //        (with pickNext) for this one's CPU to run, and the time
+    // Post: this scheduler takes over whatever from kept about the process (by default
+    //         there is nothing to take over)
+    default void adopt(int s, Scheduler from, long clock){}
+}
@@ -19,335 +19,268 @@ import java.util.*;
 /* =====================================================================================
 // A class for defining all methods needed for analyzing scheduling algorithms
 // These methods are used in the CPU simulator to analyze the various scheduling algorithms
+//
+// All algorithms are discrete-event simulations: the clock jumps straight to the next
+//   event (an arrival, a completion, or the end of a quantum) instead of ticking one unit
+//   at a time. Every time and metric is measured in logical clock ticks, so results are
+//   exact and repeatable.
+// Every algorithm is a Scheduler run by the one simulation loop in Simulator, so adding a
+//   policy only takes a new Scheduler (and a name for it in scheduler(config)).
+// The table versions read their processes from a ProcessTable, which may be shared with
+//   other runs, and write their results into their own ProcessTable.State. The completions
+//   are also folded into a RunStats, which keeps the wait, turnaround and response time
+//   histograms.
    ===================================================================================== */
 public class SchedulingAlgorithms {
     public static boolean demo = false; //True iff doing a demo
-    //Names for all the columns:
-    // Index, Process ID, Burst Time, Arrival Time, 
-    // Burst Time(milliseconds), Arrival Time(milliseconds)
-    // Remaining Time, Completion Time, Turnaround Time, Waiting Time
-    public static String [] columns = {"PID", "BT", "AT", "BTms", "ATms", "RT", "CT", "TaT", "WT"};
-    public static int [] debugCols = {0, 5, 2};//Column numbers used when printing (PID, BT, AT, RT)
-    public static HashMap<String, Integer> colIdx = new HashMap<>(); //For easy access of the number of each column
-    static int numCt = 0; //to make distinct time instances
-    
-/* =====================================================================================
-// TimeInst is used whenever we are storing arrival or remaining times in a treeset
-// Since multiple processes can have the same arrival time and/or remaining time,
-//   we need to store multiple instances of the same time.
-// TimeInst allows us to put times into a treeset and have them sorted first by the time
-//   value and then by the order in which it was processed (as numCt strictly increases)
-   ===================================================================================== */ 
-    public static class TimeInst implements Comparable<TimeInst>{
-        int time, num;                                   //Time and unique number
-        public TimeInst(int t){time = t; num = numCt++;} //Initialize time and num
-        @Override
-        public int compareTo(TimeInst o) {
-            if(time != o.time) return time-o.time;       //Compare first by time
-            return num-o.num;                            //then by order of processing
-        }
-    }
-    
+    public static final String debugHeader = "PID\tRT\tAT";   //Columns printed by debugRow
+
     public static void main(String [] args) throws Exception{
         //This is blank because all work is done in the CPU Simulator
     }
-    
+
+/* =====================================================================================
+// Pre: is passed len>0, maxBurst>minBurst>=0 and maxArrival>0;
+// Post: return a ProcessTable of len processes with random burst times in
+//         [minBurst, maxBurst) and random arrival times in [0, maxArrival)
+//       process i has PID i
+   ===================================================================================== */
+    public static ProcessTable makeNewProcess(int len, int minBurst, int maxBurst, int maxArrival){
+        return makeNewProcess(len, minBurst, maxBurst, maxArrival, new SplittableRandom().nextLong());
+    }
+
 /* =====================================================================================
-// Pre: is passed length>0, maxBurst>0 and maxArrival>0;
-// Post: return a 3-D int array with numProcesses number of copies of the same 2-D array
-//         The first dimension is the number of the copy (0..numProcesses-1)
-//         The second dimension is the value of the column attribute
-//             columns are determined by the String array columns and the hashMap colIdx
-//         The third dimension is to delineate processes by rows (0..len-1)
+// Pre: is passed len>0, maxBurst>minBurst>=0 and maxArrival>0;
+// Post: same as above, but the processes are generated from the given seed, so the same
+//         seed always gives the same processes
+//       maxArrival may be past 2^31 (arrivals within int range are drawn as they always were)
    ===================================================================================== */
-    public static int [][][] makeNewProcess(int len, int minBurst, int maxBurst, int maxArrival, int numProcesses){
-        Random rand = new Random(); //For randomly generating process information
-        if(colIdx.isEmpty()) for(int i=0; i<columns.length; i++) colIdx.put(columns[i], i);
-        //3-D int array for processes
-        int [][][] process = new int[numProcesses][columns.length][len];
+    public static ProcessTable makeNewProcess(int len, int minBurst, int maxBurst, long maxArrival, long seed){
+        SplittableRandom rand = new SplittableRandom(seed); //For randomly generating process information
+        int [] pid = new int[len];
+        long [] bt = new long[len], at = new long[len];
         for(int i=0; i<len; i++){   //for each process
-            int BT = rand.nextInt(maxBurst-minBurst)+minBurst;  //Get a random burst time
-            int AT = rand.nextInt(maxArrival);                  //Get a random arrival time
-            for(int p=0; p<numProcesses; p++){  //Initialize this process for each copy
-                process[p][colIdx.get("PID")][i] = i;
-                process[p][colIdx.get("BT")][i] = BT;
-                process[p][colIdx.get("AT")][i] = AT;
-                process[p][colIdx.get("RT")][i] = process[p][colIdx.get("BT")][i];
+            pid[i] = i;
+            bt[i] = rand.nextInt(maxBurst-minBurst)+minBurst;   //Get a random burst time
+            at[i] = maxArrival <= Integer.MAX_VALUE ? rand.nextInt((int)maxArrival)   //Get a random arrival time
+                                                    : rand.nextLong(maxArrival);
+        }
+        return new ProcessTable(pid, bt, at);
+    }
+
+    // Pre: passed a table, a state on it and a row; Post: prints the row's debugHeader columns
+    public static void debugRow(ProcessTable t, ProcessTable.State s, int i){
+        System.out.println(t.pid[i]+"\t"+s.rt[i]+"\t"+t.at[i]);
+    }
+
+    // Pre: passed a table and a state on it; Post: prints every row and how many are not done
+    public static void debugTable(ProcessTable t, ProcessTable.State s){
+        System.out.println("PID\tBT\tAT\tRT\tCT\tTaT\tWT");
+        for(int i=0; i<t.size(); i++)
+            System.out.println(t.pid[i]+"\t"+t.bt[i]+"\t"+t.at[i]+"\t"+s.rt[i]+"\t"+s.ct[i]+"\t"+s.tat[i]+"\t"+s.wt[i]);
+        int ct = 0;
+        for(long i: s.rt) if(i>0) ct++;
+        System.out.println(ct+" Not Done\n");
+    }
+
+/* =====================================================================================
+// Pre:  passed a policy config: a policy name, followed by ":" and its parameters if it has
+//         any: "FCFS", "RR:quantum", "SJF", "SRTF", "CFS:latency:granularity" or
+//         "MLFQ:levels:quantum:age" ("CFS" and "MLFQ" alone use the defaults below)
+// Post: returns a new Scheduler for one run of that policy
+//       throws IllegalArgumentException if the config is not a known policy
+   ===================================================================================== */
+    public static Scheduler scheduler(String config){
+        String [] parts = config.split(":");
+        try{
+            switch(parts[0]){
+                case "FCFS": if(parts.length == 1) return new FCFSScheduler(); break;
+                case "RR":   if(parts.length == 2) return new RRScheduler(Long.parseLong(parts[1])); break;
+                case "SJF":  if(parts.length == 1) return new SJFScheduler(); break;
+                case "SRTF": if(parts.length == 1) return new SRTFScheduler(); break;
+                case "CFS":
+                    if(parts.length == 1) return new CFSScheduler(CFSScheduler.latencyDefault, CFSScheduler.granularityDefault);
+                    if(parts.length == 3) return new CFSScheduler(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    break;
+                case "MLFQ":
+                    if(parts.length == 1) return new MLFQScheduler(MLFQScheduler.levelsDefault, MLFQScheduler.quantumDefault, MLFQScheduler.ageDefault);
+                    if(parts.length == 4) return new MLFQScheduler(Integer.parseInt(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                    break;
             }
+        }catch(NumberFormatException ex){
+            throw new IllegalArgumentException("Bad parameter in policy: "+config);
         }
-        return process;
+        throw new IllegalArgumentException("Unknown policy: "+config);
     }
-    
+
+    // Pre: passed a policy config; Post: returns its printable name, e.g. "RR (100)"
+    public static String label(String config){
+        String [] parts = config.split(":", 2);
+        return parts.length == 1 ? parts[0] : parts[0]+" ("+parts[1].replace(":", ", ")+")";
+    }
+
 /* =====================================================================================
-// Pre: passed a process with values>0 in the columns pid, bt, at, and rt and values == 0 in all other columns
+// Pre: passed a table of processes
 // Post: returns Double array containing: [idle time, total time, average wait time]
-// 
-// About: First-Come-First-Serve (FCFS) is a non-preemptive scheduling algorithm that follows 
+//
+// About: First-Come-First-Serve (FCFS) is a non-preemptive scheduling algorithm that follows
 //          a FIFO queue.
 //        Processes that arrive first get processed first and the algorithm follows this until
 //          all processes are completed.
    ===================================================================================== */
-    public static double [] FCFS(int [][] process){
-        TreeMap <TimeInst, Integer> tree = new TreeMap<>(); //For efficiently storing sorted arrival times
-        for(int i=0; i<process[0].length; i++) tree.put(new TimeInst(process[colIdx.get("AT")][i]), process[colIdx.get("PID")][i]);
-        //System.out.println(tree.size()); // Debugging code
-        
-        Queue <Integer> q = new LinkedList<>(); //Process queue
-        
-        double idle = 0.0, avgWait = 0.0;           // Accumulative counters
-        long currClock = 0, idx = 0;                 // currClock is for "running" the processes; idx is for debugging
-        long start = System.currentTimeMillis();    // get the start time
-        TimeInst next = tree.firstKey();            // next process to arrive is the smallest in the tree
-        int nextArrival = next.time, nextIndex = tree.remove(next); // get arrival time of next process
-        
-        //while there is still a process to be run or retrieved
-        while(!q.isEmpty() || !tree.isEmpty() || nextArrival>=0){
-            if(q.isEmpty()){ // need to wait for next process because it hasn't arrived yet
-                double idleTimer = System.currentTimeMillis(); // this is idle time
-                while(currClock<nextArrival){currClock++;}     // increment the clock to the next arrival time
-                idle += System.currentTimeMillis()-idleTimer;  // store the idle time spent
-                q.add(nextIndex);                              // add the next index to the queue
-                process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start); //store the arrival time in ms
-                if(!tree.isEmpty()){                // if there are still processes to be found
-                    next = tree.firstKey();         // get the next ATInst
-                    nextArrival = next.time;        // update next arrival time
-                    nextIndex = tree.remove(next);  // get the next index
-                }else nextArrival = -1;             // mark that the last item has been found
-            }
-            int curr = q.remove();                  // get the next process
-            
-            //===============================DEBUGGING CODE=========================//
-            if(demo){ for(int c: debugCols) System.out.print(process[c][curr]+"\t");
-                        System.out.println(""); }
-            //======================================================================//
-            
-            long burstSt = System.currentTimeMillis();  // start of the burst in ms
-            while(process[colIdx.get("RT")][curr]>0){   // while the process isn't done
-                process[colIdx.get("RT")][curr] --;     //  decrement the remaining process time
-                while(currClock == nextArrival){        // if we have reached the next arrival time
-                    q.add(nextIndex);                   //  add that process to the queue
-                                                        //  initialize its arrival time in ms
-                    process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start);
-                    if(!tree.isEmpty()){                // get the next process (see lines 95-99)
-                        next = tree.firstKey();
-                        nextArrival = next.time;
-                        nextIndex = tree.remove(next);
-                    }else nextArrival = -1;
-                }
-                currClock++;    // increment the current clock
-            }
-            
-            // finalize metrics for this process
-            process[colIdx.get("BTms")][curr] = (int)(System.currentTimeMillis()-burstSt);
-            process[colIdx.get("CT")][curr] = (int)(System.currentTimeMillis()-start);
-            process[colIdx.get("TaT")][curr] = process[colIdx.get("CT")][curr]-process[colIdx.get("ATms")][curr];
-            process[colIdx.get("WT")][curr] = process[colIdx.get("TaT")][curr]-process[colIdx.get("BTms")][curr];
-            // add this process's waiting time to the aggregate
-            avgWait += process[colIdx.get("WT")][curr];
-        }
-        /*
-        //===============================DEBUGGING CODE=========================//
-        for(String s: columns) System.out.print(s+"\t");
-        System.out.println("");
-        for(int r=0; r<process[0].length; r++){
-            for(int c=0; c<columns.length; c++) System.out.print(process[c][r]+"\t");
-            System.out.println("");
-        }
-        int ct = 0;
-        for(int i: process[colIdx.get("RT")]) if(i>0){ct++; System.out.println(i);}
-        System.out.println(ct+" Not Done\n");
-        */
-        //======================================================================//
-        // Return the idle time, total time, and average wait time
-        double [] result = {idle, (double)(System.currentTimeMillis()-start), avgWait/process[0].length};
-        return result;
+    public static double [] FCFS(ProcessTable t){
+        return FCFS(t, t.newState());
+    }
+
+    // Same as above, but writes the results into the given state (which must be freshly reset)
+    public static double [] FCFS(ProcessTable t, ProcessTable.State s){
+        return FCFS(t, s, new RunStats()).toArray();
     }
-    
-    
+
+    // Same as above, but also folds the run into stats, and returns stats
+    public static RunStats FCFS(ProcessTable t, ProcessTable.State s, RunStats stats){
+        return Simulator.run(new FCFSScheduler(), t.stream(), s, stats);
+    }
+
+    // FCFS as a Scheduler: a FIFO queue, and every process runs until it completes
+    public static class FCFSScheduler implements Scheduler {
+        final IntQueue q = new IntQueue();  //Process queue
+
+        @Override public void init(Simulator.Slots p){ q.clear(); }
+        @Override public void onArrival(int s, long clock){ q.add(s); }
+        @Override public boolean isEmpty(){ return q.isEmpty(); }
+        @Override public int pickNext(long clock){ return q.remove(); }
+        @Override public void onPreempt(int s, long clock){ q.add(s); }    // not called: processes run to completion
+    }
+
+
 /* =====================================================================================
-// Pre:  passed a process with values>0 in the columns pid, bt, at, and rt 
-//          and values == 0 in all other columns
+// Pre:  passed a table of processes
 //       passed a time quantum for the round robin scheduling that is > 0
 // Post: returns Double array containing: [idle time, total time, average wait time]
-// 
+//
 // About: Round Robin (RR) is a preemptive scheduling algorithm that follows a FIFO queue which
 //          allows processes to run for a specified quantum, or the remaining time of the process,
 //          whichever comes first.
 //        At the end of this quantum, if the process is not completed, it is preempted and moved to
 //          the back of the queue.
+//        Processes that arrive during a quantum are queued ahead of the preempted process.
 //        This continues until all processes have run to completion.
    ===================================================================================== */
-    public static double [] RR(int [][] process, long quant){
-        TreeMap <TimeInst, Integer> tree = new TreeMap<>(); //For efficiently storing sorted arrival times
-        for(int i=0; i<process[0].length; i++) tree.put(new TimeInst(process[colIdx.get("AT")][i]), process[colIdx.get("PID")][i]);
-        //System.out.println(tree.size()); //Debug code
-        
-        Queue <Integer> q = new LinkedList<>();     //Process queue
-        
-        double idle = 0.0, avgWait = 0.0;           // Accumulative counters
-        long currClock = 0, idx = 0;                // currClock is for "running" the processes; idx is for debugging
-        long start = System.currentTimeMillis();    // get the start time
-        TimeInst next = tree.firstKey();            // next process to arrive is the smallest in the tree
-        int nextArrival = next.time, nextIndex = tree.remove(next); // get arrival time of next process
-        
-        //while there is still a process to be run or retrieved
-        while(!q.isEmpty() || !tree.isEmpty() || nextArrival>=0){ 
-            //if(idx%100 == 0) System.out.println(idx); // Debug Code
-            if(q.isEmpty()){ // need to wait for next process because it hasn't arrived yet
-                double idleTimer = System.currentTimeMillis(); // this is idle time
-                while(currClock<nextArrival){currClock++;}     // increment the clock to the next arrival time
-                idle += System.currentTimeMillis()-idleTimer;  // store the idle time spent
-                q.add(nextIndex);                              // add the next index to the queue
-                process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start); //store the arrival time in ms
-                if(!tree.isEmpty()){                  // if there are still processes to be found
-                    next = tree.firstKey();           // get the next ATInst
-                    nextArrival = next.time;          // update next arrival time
-                    nextIndex = tree.remove(next);    // get the next index
-                }else nextArrival = -1;               // mark that the last item has been found
-            }
-            int curr = q.remove();                      // get the next process
-            
-            //===============================DEBUGGING CODE=========================//
-            if(demo){ for(int c: debugCols) System.out.print(process[c][curr]+"\t");
-                        System.out.println(""); }
-            //======================================================================//
-            long clockSt = currClock;                    // clock at the start of the process
-            long burstSt = System.currentTimeMillis();   // start of the burst in ms
-            
-            // while the process isn't done and we haven't reached the end of the quantum
-            while(process[colIdx.get("RT")][curr]>0 && (currClock-clockSt)<quant){
-                process[colIdx.get("RT")][curr] --;     // decrement the remaining time
-                while(currClock == nextArrival){        // if we reach the next process...
-                    q.add(nextIndex);                       // add it to the queue
-                    process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start);
-                    if(!tree.isEmpty()){                // get next process (see lines 190-194)
-                        next = tree.firstKey();
-                        nextArrival = next.time;
-                        nextIndex = tree.remove(next);
-                    }else nextArrival = -1;
-                }
-                currClock++;    // increment currClock
+    public static double [] RR(ProcessTable t, long quant){
+        return RR(t, t.newState(), quant);
+    }
+
+    // Same as above, but writes the results into the given state (which must be freshly reset)
+    public static double [] RR(ProcessTable t, ProcessTable.State s, long quant){
+        return RR(t, s, quant, new RunStats()).toArray();
+    }
+
+    // Same as above, but also folds the run into stats, and returns stats
+    public static RunStats RR(ProcessTable t, ProcessTable.State s, long quant, RunStats stats){
+        return Simulator.run(new RRScheduler(quant), t.stream(), s, stats);
+    }
+
+    // RR as a Scheduler: a FIFO queue, and a process that uses up its quantum goes to the back
+    // Between arrivals the queue just cycles, so as long as no process would complete, whole
+    //   rounds (a quantum for every process) are run at once by skipRounds.
+    public static class RRScheduler implements Scheduler {
+        final IntQueue q = new IntQueue();  //Process queue
+        final long quant;                   // time quantum
+        Simulator.Slots p;                  // slots of the current run
+        long wait = 0;                      // picks to let go by before trying to skip again
+        int misses = 0;                     // tries in a row that skipped nothing
+
+        // Pre: passed a time quantum > 0
+        public RRScheduler(long quant){
+            if(quant <= 0) throw new IllegalArgumentException("Quantum must be > 0");
+            this.quant = quant;
+        }
+
+        @Override public void init(Simulator.Slots p){
+            this.p = p;
+            q.clear();
+            wait = misses = 0;
+        }
+        @Override public void onArrival(int s, long clock){ q.add(s); }
+        @Override public boolean isEmpty(){ return q.isEmpty(); }
+        @Override public int pickNext(long clock){ return q.remove(); }
+        @Override public long slice(int s, long clock){ return quant; }
+        @Override public void onPreempt(int s, long clock){ q.add(s); }    // back of the queue
+
+        // k rounds of the m processes (s, then the queue) take k*m quanta; they can be run
+        //   at once if they end before the next arrival, every process has run before (so its
+        //   first run time is set) and has more than k quanta left (so none completes)
+        // Finding k takes a pass over the queue, so a single round is not worth skipping, and
+        //   after a pass that skips nothing it waits a round (twice as many after every
+        //   such pass in a row, up to 64) before the next, as processes complete every round
+        //   while many have nearly the same time left.
+        @Override public long skipRounds(int s, long clock, long until, RunStats stats){
+            if(wait > 0){ wait--; return 0; }
+            long m = q.size()+1;
+            if(2.0*m*quant >= until-clock) return 0;    // not even two rounds fit
+            long k = (until-clock-1)/(m*quant);         // rounds that end before the next arrival
+            long least = p.rt[s];
+            boolean ran = p.first[s] >= 0;
+            for(int i=0; i<q.size(); i++){
+                int x = q.get(i);
+                least = Math.min(least, p.rt[x]);
+                ran &= p.first[x] >= 0;
             }
-            // add this burst time to the time taken for the burst
-            process[colIdx.get("BTms")][curr] += (int)(System.currentTimeMillis()-burstSt);
-            
-            
-            if(process[colIdx.get("RT")][curr] == 0){ // if the process is done, finalize the metrics
-                process[colIdx.get("CT")][curr] = (int)(System.currentTimeMillis()-start);
-                process[colIdx.get("TaT")][curr] = process[colIdx.get("CT")][curr]-process[colIdx.get("ATms")][curr];
-                process[colIdx.get("WT")][curr] = process[colIdx.get("TaT")][curr]-process[colIdx.get("BTms")][curr];
-                avgWait += process[colIdx.get("WT")][curr]; // add wait time to aggregate
-                idx++;
+            k = Math.min(k, (least-1)/quant);
+            if(k < 2 || !ran){      // a process completes (or first runs) in the coming rounds
+                wait = m << Math.min(misses++, 6);
+                return 0;
             }
-            else q.add(curr); // else, add it back into the queue
+            wait = m;       // one does in the round after these
+            misses = 0;
+            p.rt[s] -= k*quant;
+            for(int i=0; i<q.size(); i++) p.rt[q.get(i)] -= k*quant;
+            if(m > 1) stats.switched(k*m, 0);  // every slice switches to another process
+            return k*m*quant;
         }
-        
-        /*
-        //===============================DEBUGGING CODE=========================//
-        for(String s: columns) System.out.print(s+"\t");
-        System.out.println("");
-        for(int r=0; r<process[0].length; r++){
-            for(int c=0; c<columns.length; c++) System.out.print(process[c][r]+"\t");
-            System.out.println("");
-        }
-        int ct = 0;
-        for(int i: process[colIdx.get("RT")]) if(i>0){ct++; System.out.println(i);}
-        System.out.println(ct+" Not Done\n");
-        */
-        //======================================================================//
-        double [] result = {idle, (double)(System.currentTimeMillis()-start), avgWait/process[0].length};
-        return result;
     }
-    
+
 /* =====================================================================================
-// Pre: passed a process with values>0 in the columns pid, bt, at, and rt 
-//         and values == 0 in all other columns
+// Pre: passed a table of processes
 // Post: returns Double array containing: [idle time, total time, average wait time]
-// 
+//
 // About: Shortest-Job-First (SJF) is a non-preemptive scheduling algorithm that runs the
 //          process with the shortest burst time first.
 //        SJF picks the shortest job out of the processes that have arrived and runs that until
 //          completion
 //        It continues in this way until all processes have been run.
    ===================================================================================== */
-    public static double [] SJF(int [][] process){
-        TreeMap <TimeInst, Integer> tree = new TreeMap<>(); //For efficiently storing sorted arrival times
-        for(int i=0; i<process[0].length; i++) tree.put(new TimeInst(process[colIdx.get("AT")][i]), process[colIdx.get("PID")][i]);
-        //Process queue, sorted by burst time then arrival time, then process ID
-        TreeMap <TimeInst, Integer> currQ = new TreeMap<>();
-        
-        double idle = 0.0, avgWait = 0.0;           // Accumulative counters
-        long currClock = 0;                           // currClock is for "running" the processes; idx is for debugging
-        long start = System.currentTimeMillis();    // get the start time
-        TimeInst next = tree.firstKey();               // next process to arrive is the smallest in the tree
-        int nextArrival = next.time, nextIndex = tree.remove(next); // get arrival time of next process
-        
-        //while there is still a process to be run or retrieved
-        while(!currQ.isEmpty() || !tree.isEmpty() || nextArrival>=0){ 
-            if(currQ.isEmpty()){ // need to wait for next process because it hasn't arrived yet
-                double idleTimer = System.currentTimeMillis(); // this is idle time
-                while(currClock<nextArrival){currClock++;}     // increment the clock to the next arrival time
-                idle += System.currentTimeMillis()-idleTimer;  // store the idle time spent
-                currQ.put(new TimeInst(process[colIdx.get("RT")][nextIndex]), nextIndex); // add the next index to the queue
-                process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start); //store the arrival time in ms
-                if(!tree.isEmpty()){                  // if there are still processes to be found
-                    next = tree.firstKey();           // get the next ATInst
-                    nextArrival = next.time;          // update next arrival time
-                    nextIndex = tree.remove(next);    // get the next index
-                }else nextArrival = -1;               // mark that the last item has been found
-            }
-            int curr = currQ.remove(currQ.firstKey()); // get the next process
-            
-            //===============================DEBUGGING CODE=========================//
-            if(demo){ for(int c: debugCols) System.out.print(process[c][curr]+"\t");
-                        System.out.println(""); }
-            //======================================================================//
-            long burstSt = System.currentTimeMillis();  // start of the burst in ms
-            while(process[colIdx.get("RT")][curr]>0){   // while this process is not done
-                process[colIdx.get("RT")][curr] --;     // decrement the remaining time for the process
-                while(currClock == nextArrival){        // if we reach the next process...
-                    currQ.put(new TimeInst(process[colIdx.get("RT")][nextIndex]), nextIndex); // add it to the queue
-                    process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start);
-                    if(!tree.isEmpty()){                // get next process (see lines 280-284)
-                        next = tree.firstKey();
-                        nextArrival = next.time;
-                        nextIndex = tree.remove(next);
-                    }else nextArrival = -1;
-                }
-                currClock++;    // increment currClock
-            }
-                // finalize the metrics
-                process[colIdx.get("BTms")][curr] += (int)(System.currentTimeMillis()-burstSt);
-                process[colIdx.get("CT")][curr] = (int)(System.currentTimeMillis()-start);
-                process[colIdx.get("RT")][curr] = 0;
-                process[colIdx.get("TaT")][curr] = process[colIdx.get("CT")][curr]-process[colIdx.get("ATms")][curr];
-                process[colIdx.get("WT")][curr] = process[colIdx.get("TaT")][curr]-process[colIdx.get("BTms")][curr];
-                //add this process's waiting time to the aggregate
-                avgWait += process[colIdx.get("WT")][curr];
-        }
-        
-        /*
-        //===============================DEBUGGING CODE=========================//
-        for(String s: columns) System.out.print(s+"\t");
-        System.out.println("");
-        for(int r=0; r<process[0].length; r++){
-            for(int c=0; c<columns.length; c++) System.out.print(process[c][r]+"\t");
-            System.out.println("");
-        }
-        int ct = 0;
-        for(int i: process[colIdx.get("RT")]) if(i>0){ct++; System.out.println(i);}
-        System.out.println(ct+" Not Done\n");
-        */
-        //======================================================================//
-        double [] result = {idle, (double)(System.currentTimeMillis()-start), avgWait/process[0].length};
-        return result;
+    public static double [] SJF(ProcessTable t){
+        return SJF(t, t.newState());
     }
-    
+
+    // Same as above, but writes the results into the given state (which must be freshly reset)
+    public static double [] SJF(ProcessTable t, ProcessTable.State s){
+        return SJF(t, s, new RunStats()).toArray();
+    }
+
+    // Same as above, but also folds the run into stats, and returns stats
+    public static RunStats SJF(ProcessTable t, ProcessTable.State s, RunStats stats){
+        return Simulator.run(new SJFScheduler(), t.stream(), s, stats);
+    }
+
+    // SJF as a Scheduler: a heap sorted by burst time then arrival order
+    public static class SJFScheduler implements Scheduler {
+        final ReadyHeap currQ = new ReadyHeap(16);  //Process queue
+        Simulator.Slots p;                          // slots of the current run
+
+        @Override public void init(Simulator.Slots p){ this.p = p; currQ.clear(); }
+        @Override public void onArrival(int s, long clock){ currQ.add(s, p.rt[s], p.order[s]); }
+        @Override public boolean isEmpty(){ return currQ.isEmpty(); }
+        @Override public int pickNext(long clock){ return currQ.poll(); }
+        @Override public void onPreempt(int s, long clock){ onArrival(s, clock); }  // not called: processes run to completion
+    }
+
 /* =====================================================================================
-// Pre: passed a process with values>0 in the columns pid, bt, at, and rt 
-//         and values == 0 in all other columns
+// Pre: passed a table of processes
 // Post: returns Double array containing: [idle time, total time, average wait time]
-// 
+//
 // About: Shortest-Remaining-Time-First (SRTF) is a preemptive scheduling algorithm that
 //          runs the process with the shortest remaining time first.
 //        When a process arrives in the queue, if its burst time is shorter than the remaining
@@ -356,91 +289,319 @@ public class SchedulingAlgorithms {
 //          time is chosen to be the next process.
 //        The SRTF scheduler continues in this way until all process have run to completion.
    ===================================================================================== */
-    public static double [] SRTF(int [][] process){
-        TreeMap <TimeInst, Integer> tree = new TreeMap<>(); //For efficiently storing sorted arrival times
-        for(int i=0; i<process[0].length; i++) tree.put(new TimeInst(process[colIdx.get("AT")][i]), process[colIdx.get("PID")][i]);
-        
-        //Process queue, sorted by remaining time then arrival time, then process ID
-        TreeMap <TimeInst, Integer> currQ = new TreeMap<>();
-        
-        double idle = 0.0, avgWait = 0.0;        // Accumulative counters
-        long currClock = 0;                      // currClock is for "running" the processes; idx is for debugging
-        long start = System.currentTimeMillis(); // get the start time
-        TimeInst next = tree.firstKey();         // next process to arrive is the smallest in the tree
-        int nextArrival = next.time, nextIndex = tree.remove(next); // get arrival time of next process
-        
-        //while there is still a process to be run or retrieved
-        while(!currQ.isEmpty() || !tree.isEmpty() || nextArrival>=0){ 
-            if(currQ.isEmpty()){ // need to wait for next process because it hasn't arrived yet
-                double idleTimer = System.currentTimeMillis(); // this is idle time
-                while(currClock<nextArrival){currClock++;}     // increment the clock to the next arrival time
-                idle += System.currentTimeMillis()-idleTimer;  // store the idle time spent
-                currQ.put(new TimeInst(process[colIdx.get("RT")][nextIndex]), nextIndex);                              // add the next index to the queue
-                process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start); //store the arrival time in ms
-                if(!tree.isEmpty()){                   // if there are still processes to be found
-                    next = tree.firstKey();            // get the next ATInst
-                    nextArrival = next.time;           // update next arrival time
-                    nextIndex = tree.remove(next);     // get the next index
-                }else nextArrival = -1;                // mark that the last item has been found
+    public static double [] SRTF(ProcessTable t){
+        return SRTF(t, t.newState());
+    }
+
+    // Same as above, but writes the results into the given state (which must be freshly reset)
+    public static double [] SRTF(ProcessTable t, ProcessTable.State s){
+        return SRTF(t, s, new RunStats()).toArray();
+    }
+
+    // Same as above, but also folds the run into stats, and returns stats
+    public static RunStats SRTF(ProcessTable t, ProcessTable.State s, RunStats stats){
+        return Simulator.run(new SRTFScheduler(), t.stream(), s, stats);
+    }
+
+    // SRTF as a Scheduler: a heap sorted by remaining time then arrival order. Whenever
+    //   processes arrive, the running process is preempted if the top of the heap now comes
+    //   before it, and goes back in with its remaining time.
+    public static class SRTFScheduler implements Scheduler {
+        final ReadyHeap currQ = new ReadyHeap(16);  //Process queue
+        Simulator.Slots p;                          // slots of the current run
+
+        @Override public void init(Simulator.Slots p){ this.p = p; currQ.clear(); }
+        @Override public void onArrival(int s, long clock){ currQ.add(s, p.rt[s], p.order[s]); }
+        @Override public boolean isEmpty(){ return currQ.isEmpty(); }
+        @Override public int pickNext(long clock){ return currQ.poll(); }
+        @Override public boolean preemptive(){ return true; }
+        @Override public boolean preempts(int s, long clock){   // a shorter process arrived
+            if(currQ.isEmpty()) return false;
+            int h = currQ.peek();
+            return ReadyHeap.before(currQ.key(h), currQ.tie(h), p.rt[s], p.order[s]);
+        }
+        @Override public void onPreempt(int s, long clock){ currQ.add(s, p.rt[s], p.order[s]); }
+    }
+
+/* =====================================================================================
+// Pre:  passed a table of processes
+//       passed a target latency > 0 and a minimum granularity > 0
+// Post: returns Double array containing: [idle time, total time, average wait time]
+//
+// About: The Completely Fair Scheduler (CFS) of Linux gives every process a share of the
+//          CPU in proportion to its weight, which comes from its priority (nice value).
+//        Every process has a virtual runtime: the time it has run, scaled down by its weight.
+//          The process with the smallest virtual runtime runs next, for its share of the
+//          target latency (but at least the minimum granularity), and a process that arrives
+//          starts at the smallest virtual runtime so far.
+//        An arriving process preempts the running one if it is behind it by more than the
+//          minimum granularity.
+//        This continues until all processes have run to completion.
+   ===================================================================================== */
+    public static double [] CFS(ProcessTable t, long latency, long granularity){
+        return CFS(t, t.newState(), latency, granularity);
+    }
+
+    // Same as above, but writes the results into the given state (which must be freshly reset)
+    public static double [] CFS(ProcessTable t, ProcessTable.State s, long latency, long granularity){
+        return CFS(t, s, latency, granularity, new RunStats()).toArray();
+    }
+
+    // Same as above, but also folds the run into stats, and returns stats
+    public static RunStats CFS(ProcessTable t, ProcessTable.State s, long latency, long granularity, RunStats stats){
+        return Simulator.run(new CFSScheduler(latency, granularity), t.stream(), s, stats);
+    }
+
+    // CFS as a Scheduler: a heap sorted by virtual runtime then arrival order
+    public static class CFSScheduler implements Scheduler {
+        public static final long latencyDefault = 2000, granularityDefault = 250;
+        // weight of each nice value from -20 to 19, as in Linux (nice 0 = 1024, and each
+        //   step is about 1.25 times the CPU share of the next)
+        static final int [] weights = {
+            88761, 71755, 56483, 46273, 36291, 29154, 23254, 18705, 14949, 11916,
+             9548,  7620,  6100,  4904,  3906,  3121,  2501,  1991,  1586,  1277,
+             1024,   820,   655,   526,   423,   335,   272,   215,   172,   137,
+              110,    87,    70,    56,    45,    36,    29,    23,    18,    15};
+        final long latency, granularity;    // target latency and minimum granularity
+        final ReadyHeap currQ = new ReadyHeap(16);  //Process queue
+        Simulator.Slots p;                  // slots of the current run
+        long [] vr = new long[16];          // virtual runtime of each slot
+        long [] last = new long[16];        // remaining time of each slot when vr was last updated
+        long [] rem = new long[16];         // what the division by the weight left out of vr, so
+                                            //   short runs of heavy processes still add up
+        long minVr = 0;                     // smallest virtual runtime so far (never goes down)
+        long load = 0;                      // total weight of the processes queued or running
+        int nr = 0;                         // number of processes queued or running
+
+        // Pre: passed a target latency > 0 and a minimum granularity > 0
+        public CFSScheduler(long latency, long granularity){
+            if(latency <= 0 || granularity <= 0) throw new IllegalArgumentException("Latency and granularity must be > 0");
+            this.latency = latency;
+            this.granularity = granularity;
+        }
+
+        @Override public void init(Simulator.Slots p){
+            this.p = p;
+            currQ.clear();
+            minVr = load = nr = 0;
+        }
+        @Override public void onArrival(int s, long clock){
+            if(s >= vr.length) grow();
+            vr[s] = minVr;
+            last[s] = p.rt[s];
+            rem[s] = 0;
+            load += weight(s);
+            nr++;
+            currQ.add(s, vr[s], p.order[s]);
+        }
+        @Override public boolean isEmpty(){ return currQ.isEmpty(); }
+        @Override public int pickNext(long clock){
+            int s = currQ.poll();
+            minVr = Math.max(minVr, vr[s]);
+            return s;
+        }
+        // its share of the latency (stretched so no slice is under the granularity)
+        @Override public long slice(int s, long clock){
+            long period = Math.max(latency, nr*granularity);
+            return Math.max(granularity, period*weight(s)/load);
+        }
+        @Override public boolean preemptive(){ return true; }
+        @Override public boolean preempts(int s, long clock){
+            account(s);
+            return !currQ.isEmpty() && vr[currQ.peek()]+granularity < vr[s];
+        }
+        @Override public void onPreempt(int s, long clock){
+            account(s);
+            currQ.add(s, vr[s], p.order[s]);
+        }
+        @Override public void onComplete(int s, long clock){
+            load -= weight(s);
+            nr--;
+        }
+        // a blocked process is off the run queue, so it does not count in the load
+        @Override public void onBlock(int s, long clock){
+            account(s);
+            onComplete(s, clock);
+        }
+        // like Linux, a process that slept keeps its virtual runtime, but no less than half a
+        //   latency behind the queue, so sleeping earns it a little credit and not a lot
+        @Override public void onWake(int s, long clock){
+            vr[s] = Math.max(vr[s], minVr-latency/2);
+            load += weight(s);
+            nr++;
+            currQ.add(s, vr[s], p.order[s]);
+        }
+        // keeps how far the process was ahead of or behind the other CPU's processes
+        @Override public void adopt(int s, Scheduler from, long clock){
+            CFSScheduler f = (CFSScheduler)from;
+            if(s >= vr.length) grow();
+            vr[s] = f.vr[s]-f.minVr+minVr;
+            last[s] = f.last[s];
+            rem[s] = f.rem[s];
+            f.load -= f.weight(s);
+            f.nr--;
+            load += weight(s);
+            nr++;
+        }
+
+        // weight of slot s, from its priority as a nice value
+        int weight(int s){ return weights[Math.min(Math.max(p.prio[s], -20), 19)+20]; }
+
+        // add the time slot s ran since its last update to its virtual runtime
+        void account(int s){
+            long ran = (last[s]-p.rt[s])*1024+rem[s];
+            vr[s] += ran/weight(s);
+            rem[s] = ran%weight(s);
+            last[s] = p.rt[s];
+        }
+
+        private void grow(){
+            vr = Arrays.copyOf(vr, p.capacity());
+            last = Arrays.copyOf(last, p.capacity());
+            rem = Arrays.copyOf(rem, p.capacity());
+        }
+    }
+
+/* =====================================================================================
+// Pre:  passed a table of processes
+//       passed a number of levels > 0, the quantum of the top level > 0 and an age >= 0
+// Post: returns Double array containing: [idle time, total time, average wait time]
+//
+// About: A Multi-Level Feedback Queue (MLFQ) has a FIFO queue per priority level, and
+//          always runs a process from the highest level that has any.
+//        Processes arrive at the top level. A process that uses up the quantum of its level
+//          (which doubles with every level down) moves down a level, so long jobs sink and
+//          short ones finish quickly.
+//        An arriving process preempts a running process from a lower level.
+//        A process that has waited in a queue for age ticks moves up a level (aging), so
+//          long jobs cannot starve; an age of 0 turns aging off.
+//        This continues until all processes have run to completion.
+   ===================================================================================== */
+    public static double [] MLFQ(ProcessTable t, int levels, long quantum, long age){
+        return MLFQ(t, t.newState(), levels, quantum, age);
+    }
+
+    // Same as above, but writes the results into the given state (which must be freshly reset)
+    public static double [] MLFQ(ProcessTable t, ProcessTable.State s, int levels, long quantum, long age){
+        return MLFQ(t, s, levels, quantum, age, new RunStats()).toArray();
+    }
+
+    // Same as above, but also folds the run into stats, and returns stats
+    public static RunStats MLFQ(ProcessTable t, ProcessTable.State s, int levels, long quantum, long age, RunStats stats){
+        return Simulator.run(new MLFQScheduler(levels, quantum, age), t.stream(), s, stats);
+    }
+
+    // MLFQ as a Scheduler: a ring-buffer queue per level. Since every queue is in the order
+    //   its processes were queued, only the front of each can be due for aging.
+    public static class MLFQScheduler implements Scheduler {
+        public static final int levelsDefault = 3;
+        public static final long quantumDefault = 100, ageDefault = 10000;
+        final int levels;               // number of levels (0 is the top)
+        final long quantum, age;        // quantum of the top level, wait before moving up
+        final IntQueue [] q;            // queue of each level
+        Simulator.Slots p;              // slots of the current run
+        int [] level = new int[16];     // level of each slot
+        long [] used = new long[16];    // time each slot has used of its level's quantum
+        long [] since = new long[16];   // time each slot was queued
+        long [] last = new long[16];    // remaining time of each slot when it was picked
+        int queued = 0;                 // number of processes queued on any level
+
+        // Pre: passed a number of levels > 0, the quantum of the top level > 0 and an age >= 0
+        public MLFQScheduler(int levels, long quantum, long age){
+            if(levels <= 0 || levels > 32 || quantum <= 0 || age < 0)
+                throw new IllegalArgumentException("Need 0 < levels <= 32, quantum > 0 and age >= 0");
+            this.levels = levels;
+            this.quantum = quantum;
+            this.age = age;
+            q = new IntQueue[levels];
+            for(int l=0; l<levels; l++) q[l] = new IntQueue();
+        }
+
+        @Override public void init(Simulator.Slots p){
+            this.p = p;
+            for(IntQueue l: q) l.clear();
+            queued = 0;
+        }
+        @Override public void onArrival(int s, long clock){
+            if(s >= level.length) grow();
+            level[s] = 0;
+            used[s] = 0;
+            enqueue(s, clock);
+        }
+        @Override public boolean isEmpty(){ return queued == 0; }
+        @Override public int pickNext(long clock){
+            age(clock);
+            int l = 0;
+            while(q[l].isEmpty()) l++;  // highest level with a process
+            int s = q[l].remove();
+            queued--;
+            last[s] = p.rt[s];
+            return s;
+        }
+        // what is left of its level's quantum
+        @Override public long slice(int s, long clock){ return quantum(level[s])-used[s]; }
+        @Override public boolean preemptive(){ return true; }
+        @Override public boolean preempts(int s, long clock){
+            age(clock);
+            for(int l=0; l<level[s]; l++) if(!q[l].isEmpty()) return true;  // a higher level has one
+            return false;
+        }
+        @Override public void onPreempt(int s, long clock){
+            charge(s);
+            enqueue(s, clock);
+        }
+        // what it ran counts against its quantum, so giving up the CPU for I/O just before the
+        //   quantum runs out does not keep a process at a high level for ever
+        @Override public void onBlock(int s, long clock){ charge(s); }
+        @Override public void onWake(int s, long clock){ enqueue(s, clock); }
+        @Override public void adopt(int s, Scheduler from, long clock){
+            MLFQScheduler f = (MLFQScheduler)from;
+            if(s >= level.length) grow();
+            level[s] = f.level[s];
+            used[s] = f.used[s];
+            last[s] = f.last[s];
+        }
+
+        // quantum of level l
+        long quantum(int l){ return quantum << l; }
+
+        // count the time slot s ran since it was picked against its level's quantum, moving
+        //   it down a level if it used the quantum up
+        void charge(int s){
+            used[s] += last[s]-p.rt[s];
+            if(used[s] >= quantum(level[s])){
+                level[s] = Math.min(level[s]+1, levels-1);
+                used[s] = 0;
             }
-            int curr = currQ.remove(currQ.firstKey()); // get the next process
-            boolean newCurr = true;
-            long burstSt = System.currentTimeMillis();  // start of the burst in ms
-            boolean preempt = false;                    // boolean for preempting
-            while(process[colIdx.get("RT")][curr]>0){   // while the process is not done
-                while(currClock == nextArrival){        // if we reach the next process...
-                    currQ.put(new TimeInst(process[colIdx.get("RT")][nextIndex]), nextIndex); // add it to the queue
-                    process[colIdx.get("ATms")][nextIndex] = (int)(System.currentTimeMillis()-start);
-                    
-                    // If the new process's RT is less than the current process's RT, preempt
-                    if(process[colIdx.get("RT")][nextIndex] < process[colIdx.get("RT")][curr]) preempt = true;
-                    
-                    if(!tree.isEmpty()){                // get next process (see lines 367-371)
-                        next = tree.firstKey();
-                        nextArrival = next.time;
-                        nextIndex = tree.remove(next);
-                    }else nextArrival = -1;
-                }
-                if(preempt) break;   // preempt if necessary
-                
-                //===============================DEBUGGING CODE=========================//
-                if(demo && newCurr){ for(int c: debugCols) System.out.print(process[c][curr]+"\t");
-                            System.out.println(""); 
-                            newCurr = false;
+        }
+
+        // queue slot s at the back of its level
+        void enqueue(int s, long clock){
+            since[s] = clock;
+            q[level[s]].add(s);
+            queued++;
+        }
+
+        // move every process that has waited age ticks up a level
+        void age(long clock){
+            if(age == 0) return;
+            for(int l=1; l<levels; l++){
+                while(!q[l].isEmpty() && clock-since[q[l].peek()] >= age){
+                    int s = q[l].remove();
+                    queued--;
+                    level[s] = l-1;
+                    used[s] = 0;
+                    enqueue(s, clock);
                 }
-                //======================================================================//
-                
-                currClock++;         // increment currClock
-                process[colIdx.get("RT")][curr]--;      // decrement the remaining time
             }
-            // add the time of this burst to the burst time of the current process
-            process[colIdx.get("BTms")][curr] += (int)(System.currentTimeMillis()-burstSt);
-            if(preempt){ // preempt if necessary
-                currQ.put(new TimeInst(process[colIdx.get("RT")][curr]), curr); // put process back into queue
-                continue; // go to next iteration
-            }
-            // if done, finalize the metrics
-            process[colIdx.get("CT")][curr] = (int)(System.currentTimeMillis()-start);
-            process[colIdx.get("TaT")][curr] = process[colIdx.get("CT")][curr]-process[colIdx.get("ATms")][curr];
-            process[colIdx.get("WT")][curr] = process[colIdx.get("TaT")][curr]-process[colIdx.get("BTms")][curr];
-            //add this process's waiting time to the aggregate
-            avgWait += process[colIdx.get("WT")][curr];
         }
-        
-        /*
-        //===============================DEBUGGING CODE=========================//
-        for(String s: columns) System.out.print(s+"\t");
-        System.out.println("");
-        for(int r=0; r<process[0].length; r++){
-            for(int c=0; c<columns.length; c++) System.out.print(process[c][r]+"\t");
-            System.out.println("");
+
+        private void grow(){
+            int n = p.capacity();
+            level = Arrays.copyOf(level, n);
+            used = Arrays.copyOf(used, n);
+            since = Arrays.copyOf(since, n);
+            last = Arrays.copyOf(last, n);
         }
-        int ct = 0;
-        for(int i: process[colIdx.get("RT")]) if(i>0){ct++; System.out.println(i);}
-        System.out.println(ct+" Not Done\n");
-        */
-        //======================================================================//
-        double [] result = {idle, (double)(System.currentTimeMillis()-start), avgWait/process[0].length};
-        return result;
     }
 }
@@ -0,0 +1,187 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.util.Arrays;
+
+/* =====================================================================================
+// Checks of what the simulator promises but no single run shows (e.g. that a faster path
+//   gives the same results as the plain one), for after changing a scheduler or a path
+//
+// Usage: java Analysis.SelfCheck
+//
+// Prints one line per check and exits with status 1 if any of them failed.
+   ===================================================================================== */
+public class SelfCheck {
+    static int failed = 0;  // checks failed so far
+
+    public static void main(String [] args){
+        cfsWeights();
+        rrSkip();
+        offHeap();
+        if(failed > 0){
+            System.out.println(failed+" check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    // Post: prints the result of the named check, and counts it if it failed
+    static void report(String name, boolean ok, String detail){
+        System.out.println((ok ? "ok   " : "FAIL ")+name+(ok ? "" : ": "+detail));
+        if(!ok) failed++;
+    }
+
+    // Post: returns stats as RunStats.write stores them, so two runs' stats can be compared
+    static byte [] bytes(RunStats stats){
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try{
+            stats.write(new DataOutputStream(buf));
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        return buf.toByteArray();
+    }
+
+    // Post: returns null if the two states hold the same completion and first run times,
+    //         otherwise a description of the first row where they differ
+    static String diff(ProcessTable.State a, ProcessTable.State b){
+        for(int i = 0; i < a.ct.length; i++){
+            if(a.ct(i) != b.ct(i)) return "row "+i+" completes at "+a.ct(i)+" and at "+b.ct(i);
+            if(a.st(i) != b.st(i)) return "row "+i+" first runs at "+a.st(i)+" and at "+b.st(i);
+        }
+        return null;
+    }
+
+/* =====================================================================================
+// CFS: two long processes at nice -20 and -15 must not starve short nice 0 jobs arriving
+//   every 20 ticks. No short job should wait more than a few target latencies (the first
+//   ones wait longest, while the jobs queued behind the heavy processes stretch the
+//   period), instead of waiting for the heavy processes to finish. A short run of a heavy
+//   process adds nothing to its virtual runtime once divided by its weight, so the
+//   virtual runtime has to keep what the division leaves out.
+   ===================================================================================== */
+    static void cfsWeights(){
+        int n = 2+2500;
+        int [] pid = new int[n];
+        long [] bt = new long[n], at = new long[n];
+        int [] prio = new int[n];
+        for(int i = 0; i < n; i++){
+            pid[i] = i+1;
+            bt[i] = i < 2 ? 50000 : 1;
+            at[i] = i < 2 ? 0 : (i-2)*20L;
+        }
+        prio[0] = -20;
+        prio[1] = -15;
+        ProcessTable t = new ProcessTable(pid, bt, at);
+        ProcessTable.State s = t.newState();
+        long latency = SchedulingAlgorithms.CFSScheduler.latencyDefault;
+        Simulator.run(new SchedulingAlgorithms.CFSScheduler(latency, SchedulingAlgorithms.CFSScheduler.granularityDefault),
+                      ProcessStream.withPriorities(t.stream(), prio), s, new RunStats());
+        long worst = 0;
+        for(int i = 2; i < n; i++) worst = Math.max(worst, s.wt(i));
+        report("CFS short jobs beside heavy ones", worst <= 3*latency, "a nice 0 job waited "+worst+" ticks");
+    }
+
+/* =====================================================================================
+// RR: running whole rounds at once (skipRounds) must give the same completion and first
+//   run times, context switches and stats as running one slice at a time, over workloads
+//   from mostly idle to overloaded and quanta from 1 tick to longer than most bursts.
+//   The check fails too if no round was ever skipped, as it would then show nothing.
+   ===================================================================================== */
+    static void rrSkip(){
+        long [][] workloads = {    // processes, shortest and longest burst, latest arrival
+            {2000, 1, 50, 20000}, {2000, 250, 5000, 10000000}, {2000, 250, 5000, 2000000},
+            {1000, 5000, 50000, 100000}, {300, 1, 100000, 1000000}};
+        long [] quanta = {1, 7, 100, 250, 1000, 20000};
+        long skipped = 0;
+        for(int w = 0; w < workloads.length; w++){
+            long [] c = workloads[w];
+            ProcessTable t = SchedulingAlgorithms.makeNewProcess((int)c[0], (int)c[1], (int)c[2], c[3], 42+w);
+            for(long q: quanta){
+                String name = "RR:"+q+" skipping rounds, workload "+w;
+                ProcessTable.State fast = t.newState(), slow = t.newState();
+                long [] ticks = {0};
+                SchedulingAlgorithms.RRScheduler rr = new SchedulingAlgorithms.RRScheduler(q);
+                Scheduler counted = new Delegate(rr){
+                    @Override public long skipRounds(int s, long clock, long until, RunStats stats){
+                        long d = rr.skipRounds(s, clock, until, stats);
+                        ticks[0] += d;
+                        return d;
+                    }
+                };
+                RunStats a = Simulator.run(counted, t.stream(), fast, new RunStats());
+                RunStats b = Simulator.run(new Delegate(new SchedulingAlgorithms.RRScheduler(q)), t.stream(), slow, new RunStats());
+                skipped += ticks[0];
+                String d = diff(fast, slow);
+                if(d == null && a.switches() != b.switches())
+                    d = a.switches()+" context switches and "+b.switches();
+                if(d == null && !Arrays.equals(bytes(a), bytes(b))) d = "the stats differ";
+                if(d != null){
+                    report(name, false, d);
+                    return;
+                }
+            }
+        }
+        report("RR skipping rounds", skipped > 0, "no round was skipped");
+    }
+
+/* =====================================================================================
+// --offheap: every policy must give the same per-process results and stats on the
+//   processes of a ProcessStore as on the table makeNewProcess makes from the same seed,
+//   with the workloads of the simulator's epochs (including more processes than arrival
+//   times, so many arrive together and their order matters)
+   ===================================================================================== */
+    static void offHeap(){
+        String [] policies = {"FCFS", "RR:100", "SJF", "SRTF", "CFS", "MLFQ"};
+        int [] sizes = {1, 1000, 20000};
+        for(int n: sizes){
+            ProcessTable t = SchedulingAlgorithms.makeNewProcess(n, 250, 5000, 50000, n);
+            ProcessStore store = ProcessStore.generate(n, 250, 5000, 50000, n);
+            for(String policy: policies){
+                ProcessTable.State onHeap = t.newState(), offHeap = t.newState();
+                RunStats a = Simulator.run(SchedulingAlgorithms.scheduler(policy), t.stream(), onHeap, new RunStats());
+                RunStats b = Simulator.run(SchedulingAlgorithms.scheduler(policy), store.stream(), offHeap, new RunStats());
+                String d = diff(onHeap, offHeap);
+                if(d == null && !Arrays.equals(bytes(a), bytes(b))) d = "the stats differ";
+                if(d != null){
+                    report(policy+" off the heap, "+n+" processes", false, d);
+                    return;
+                }
+            }
+        }
+        report("Off-heap processes", true, null);
+    }
+
+    // A scheduler that passes every hook on to another, except skipRounds, which skips nothing
+    static class Delegate implements Scheduler {
+        final Scheduler sch;    // scheduler the hooks go to
+
+        Delegate(Scheduler sch){ this.sch = sch; }
+
+        @Override public void init(Simulator.Slots p){ sch.init(p); }
+        @Override public void onArrival(int s, long clock){ sch.onArrival(s, clock); }
+        @Override public boolean isEmpty(){ return sch.isEmpty(); }
+        @Override public int pickNext(long clock){ return sch.pickNext(clock); }
+        @Override public long slice(int s, long clock){ return sch.slice(s, clock); }
+        @Override public boolean preemptive(){ return sch.preemptive(); }
+        @Override public boolean preempts(int s, long clock){ return sch.preempts(s, clock); }
+        @Override public void onPreempt(int s, long clock){ sch.onPreempt(s, clock); }
+        @Override public void onComplete(int s, long clock){ sch.onComplete(s, clock); }
+        @Override public void onBlock(int s, long clock){ sch.onBlock(s, clock); }
+        @Override public void onWake(int s, long clock){ sch.onWake(s, clock); }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+
+/* =====================================================================================
+// Simulator is the one simulation loop every scheduling policy runs on
+// It reads processes from a ProcessStream only when they arrive and folds each process into
+//   a RunStats as soon as it completes. A process only takes up memory (a slot) between its
+//   arrival and its completion, so memory depends on how many processes are in the system
+//   at once, not on how many there are in total.
+// What to run and for how long is left to a Scheduler. Like the rest of the algorithms it
+//   is a discrete-event simulation: the clock jumps from one event (an arrival, a
+//   completion or the end of a slice) to the next.
+// Every context switch can cost simulated time (see SwitchCost); by default it is free.
+// A process that waits for I/O (see ProcessStream) is blocked: it leaves the CPU and the
+//   ready queue until its I/O completes, when it is queued again like an arrival. Time spent
+//   blocked is not waiting time.
+   ===================================================================================== */
+public class Simulator {
+
+/* =====================================================================================
+// Slots hold the processes that have arrived but not completed. A completed process's slot
+//   is put on a free list and handed to the next process that arrives.
+   ===================================================================================== */
+    public static class Slots {
+        long [] at = new long[16], bt = new long[16], rt = new long[16]; // arrival, burst, remaining time
+        long [] first = new long[16];   // time the process first ran, -1 until then
+        long [] left = new long[16];    // time the process last left the CPU
+        long [] id = new long[16];      // ID the stream gave the process
+        long [] ioEvery = new long[16]; // CPU time the process runs between I/O waits, 0 if it never waits
+        long [] ioWait = new long[16];  // time each of its I/O waits takes
+        long [] untilIo = new long[16]; // CPU time left until its next I/O wait
+        long [] blocked = new long[16]; // time it has spent waiting for I/O
+        long [] order = new long[16];   // arrival order of the process in each slot
+        int [] prio = new int[16];      // priority the stream gave the process
+        int [] free = new int[16];      // slots that are free to reuse
+        int nFree = 0, used = 0;        // number of free slots, number of slots ever used
+        long arrived = 0;               // number of processes that have arrived so far
+        int withIo = 0;                 // number of slots in use whose process waits for I/O
+
+        public long at(int s){ return at[s]; }          // arrival time of slot s
+        public long bt(int s){ return bt[s]; }          // burst time of slot s
+        public long rt(int s){ return rt[s]; }          // remaining time of slot s
+        public long order(int s){ return order[s]; }    // arrival order of slot s
+        public int priority(int s){ return prio[s]; }   // priority of slot s
+        public long blocked(int s){ return blocked[s]; } // time slot s has spent waiting for I/O
+        public int capacity(){ return at.length; }      // slots are numbered below this
+
+        // Pre: passed a stream with a next process; Post: returns a slot holding that process
+        int take(ProcessStream in){
+            int s = take(in.arrival(), in.burst(), in.id(), in.priority());
+            long every = in.ioEvery();
+            if(every > 0 && every < in.burst()){    // (a process that finishes first never waits)
+                ioEvery[s] = untilIo[s] = every;
+                ioWait[s] = in.ioWait();
+                withIo++;
+            }
+            return s;
+        }
+
+        // Pre: passed the arrival time, burst time, ID and priority of a process
+        // Post: returns a slot holding that process
+        int take(long arrival, long burst, long pid, int priority){
+            int s;
+            if(nFree > 0) s = free[--nFree];
+            else{
+                if(used == at.length) grow();
+                s = used++;
+            }
+            at[s] = arrival;
+            bt[s] = burst;
+            rt[s] = burst;
+            first[s] = -1;
+            id[s] = pid;
+            prio[s] = priority;
+            order[s] = arrived++;
+            ioEvery[s] = 0;
+            blocked[s] = 0;
+            return s;
+        }
+
+        // Post: slot s is free to reuse
+        void release(int s){
+            if(ioEvery[s] > 0) withIo--;
+            free[nFree++] = s;
+        }
+
+        // Pre: passed a slot, and the time it has just run for
+        // Post: returns true iff the process has to wait for I/O now (it has time remaining
+        //         and has run ioEvery since it last waited); if so, its I/O wait is counted
+        //         and its next wait is ioEvery away again
+        boolean ranFor(int s, long t){
+            if(ioEvery[s] == 0) return false;
+            untilIo[s] -= t;
+            if(untilIo[s] > 0 || rt[s] == 0) return false;
+            untilIo[s] = ioEvery[s];
+            blocked[s] += ioWait[s];
+            return true;
+        }
+
+        // Pre: passed a slot and its slice; Post: returns how long it runs before it stops
+        //        (it completes, its slice runs out or it waits for I/O)
+        long runFor(int s, long slice){
+            long t = Math.min(rt[s], slice);
+            return ioEvery[s] > 0 ? Math.min(t, untilIo[s]) : t;
+        }
+
+        private void grow(){
+            int n = at.length*2;
+            at = Arrays.copyOf(at, n);
+            bt = Arrays.copyOf(bt, n);
+            rt = Arrays.copyOf(rt, n);
+            first = Arrays.copyOf(first, n);
+            left = Arrays.copyOf(left, n);
+            id = Arrays.copyOf(id, n);
+            ioEvery = Arrays.copyOf(ioEvery, n);
+            ioWait = Arrays.copyOf(ioWait, n);
+            untilIo = Arrays.copyOf(untilIo, n);
+            blocked = Arrays.copyOf(blocked, n);
+            order = Arrays.copyOf(order, n);
+            prio = Arrays.copyOf(prio, n);
+            free = Arrays.copyOf(free, n);
+        }
+    }
+
+/* =====================================================================================
+// Pre:  passed a fresh scheduler and a stream of processes
+// Post: returns the statistics of running the processes with the scheduler
+   ===================================================================================== */
+    public static RunStats run(Scheduler sch, ProcessStream in){
+        return run(sch, in, null, new RunStats());
+    }
+
+/* =====================================================================================
+// Pre:  passed a fresh scheduler, a stream of processes, the state to write per-process
+//         results into (or null) and the statistics to fold the run into
+// Post: runs the processes with the scheduler and returns stats
+//       if out is not null, the stream's IDs must be rows of out's table (as given by
+//         ProcessTable.stream) and the results of every process are written into its row
+   ===================================================================================== */
+    public static RunStats run(Scheduler sch, ProcessStream in, ProcessTable.State out, RunStats stats){
+        return run(sch, in, out, stats, SwitchCost.NONE);
+    }
+
+    // Same as above, but every context switch costs the CPU what cost says
+    public static RunStats run(Scheduler sch, ProcessStream in, ProcessTable.State out, RunStats stats, SwitchCost cost){
+        return run(sch, in, out, stats, cost, null);
+    }
+
+    // Same as above, but records what happens in log as CPU 0 (if it is not null)
+    public static RunStats run(Scheduler sch, ProcessStream in, ProcessTable.State out, RunStats stats, SwitchCost cost,
+                               EventLog log){
+        Slots p = new Slots();
+        sch.init(p);
+        ReadyHeap io = new ReadyHeap(16);   // processes blocked for I/O, by the time it completes
+        boolean preemptive = sch.preemptive();  // stop at arrivals to ask sch.preempts
+        long idle = 0, currClock = 0;   // idle ticks and the logical clock
+        long prev = -1;                 // arrival order of the process that ran last, -1 if none has
+        long done = 0;                  // processes completed, for the number waiting in log
+        // whole rounds may be skipped if they cost nothing to switch and are not shown in a
+        //   demo or recorded one slice at a time
+        boolean skip = cost.isFree() && !(SchedulingAlgorithms.demo && out != null) && log == null;
+
+        //while there is still a process to be run or retrieved
+        while(!sch.isEmpty() || in.hasNext() || !io.isEmpty()){
+            // add every process that has arrived (or woken) by now to the queue, before
+            //   deciding whether the CPU is idle, so the clock only ever jumps forward
+            while(next(in, io) <= currClock) admit(sch, p, in, io, currClock);
+            if(sch.isEmpty()){ // need to wait for next process because it hasn't arrived yet
+                long nextArrival = next(in, io);    // after now, as every earlier one is queued
+                idle += nextArrival-currClock;  // the CPU is idle until then
+                stats.idled(currClock, nextArrival, 1);
+                if(log != null) log.idle(0, currClock, nextArrival);
+                currClock = nextArrival;        // jump the clock to the next arrival
+                while(next(in, io) <= currClock) admit(sch, p, in, io, currClock);
+            }
+            int curr = sch.pickNext(currClock);     // get the next process
+            if(skip && p.withIo == 0) currClock += sch.skipRounds(curr, currClock, next(in, io), stats);
+            long slice = sch.slice(curr, currClock);    // set when it is picked, before any switch
+            boolean cold = p.first[curr] < 0;
+            if(p.first[curr] < 0){              // first time it gets the CPU
+                p.first[curr] = currClock;
+                if(out != null) out.st[(int)p.id[curr]] = currClock;
+            }
+
+            //===============================DEBUGGING CODE=========================//
+            if(SchedulingAlgorithms.demo && out != null) debugRow(p, curr, out);
+            //======================================================================//
+            if(log != null) log.dispatch(0, currClock, p.id[curr], (int)(p.arrived-done-io.size()-1));
+
+            if(p.order[curr] != prev){          // a context switch, which may take time
+                long c = cost.cost(cold, currClock-p.left[curr]);
+                stats.switched(c);
+                prev = p.order[curr];
+                currClock += c;
+                // add every process that arrived during the switch (it cannot be preempted yet)
+                for(long a; (a = next(in, io)) < currClock; ) admit(sch, p, in, io, a);
+            }
+
+            // run until the process completes, its slice ends or it waits for I/O, stopping
+            //   at every arrival before then if the scheduler may preempt it
+            long start = currClock, end = currClock+p.runFor(curr, slice);
+            boolean preempt = false;
+            while(!preempt && preemptive && next(in, io) < end){
+                long nextArrival = next(in, io);
+                p.rt[curr] -= nextArrival-currClock;
+                currClock = nextArrival;
+                while(next(in, io) == currClock) admit(sch, p, in, io, currClock);
+                preempt = sch.preempts(curr, currClock);
+            }
+            if(!preempt){
+                p.rt[curr] -= end-currClock;
+                currClock = end;
+                // add every process that arrived during the slice (or right as it ended)
+                while(next(in, io) <= currClock) admit(sch, p, in, io, currClock);
+            }
+            if(p.ranFor(curr, currClock-start)){    // blocked until its I/O completes
+                p.left[curr] = currClock;
+                sch.onBlock(curr, currClock);
+                io.add(curr, currClock+p.ioWait[curr], p.order[curr]);
+                if(log != null) log.block(0, currClock, p.id[curr], (int)(p.arrived-done-io.size()));
+                continue;
+            }
+            if(p.rt[curr] > 0){                 // stopped early, the scheduler requeues it
+                p.left[curr] = currClock;
+                sch.onPreempt(curr, currClock);
+                if(log != null) log.preempt(0, currClock, p.id[curr], (int)(p.arrived-done-io.size()));
+                continue;
+            }
+            sch.onComplete(curr, currClock);    // the process is done, fold in its metrics
+            stats.complete(p.at[curr], p.bt[curr], p.first[curr], currClock, p.blocked[curr]);
+            if(out != null) completed(p, curr, currClock, out);
+            if(log != null) log.complete(0, currClock, p.id[curr], (int)(p.arrived-++done-io.size()));
+            p.release(curr);
+        }
+        stats.finish(idle, currClock);
+        return stats;
+    }
+
+    // Post: returns the time of the next arrival or I/O completion, Long.MAX_VALUE if there
+    //         is neither
+    private static long next(ProcessStream in, ReadyHeap io){
+        long t = in.hasNext() ? in.arrival() : Long.MAX_VALUE;
+        return io.isEmpty() ? t : Math.min(t, io.key(io.peek()));
+    }
+
+    // Pre: there is a next arrival or I/O completion
+    // Post: queues the process that arrives or wakes next (one that wakes first, at the same
+    //         time) with sch, at the given time
+    private static void admit(Scheduler sch, Slots p, ProcessStream in, ReadyHeap io, long clock){
+        if(!io.isEmpty() && (!in.hasNext() || io.key(io.peek()) <= in.arrival())) sch.onWake(io.poll(), clock);
+        else{
+            sch.onArrival(p.take(in), clock);
+            in.next();
+        }
+    }
+
+    // Post: prints the row of out holding the process in slot s (with its remaining time)
+    private static void debugRow(Slots p, int s, ProcessTable.State out){
+        int row = (int)p.id[s];
+        out.rt[row] = p.rt[s];
+        SchedulingAlgorithms.debugRow(out.table, out, row);
+    }
+
+    // Post: writes the completion, turnaround and waiting time of slot s into its row of out
+    //         (the remaining time of a row is only kept up to date in a demo, and is 0 once
+    //         it completes; time blocked for I/O is not waiting time)
+    private static void completed(Slots p, int s, long clock, ProcessTable.State out){
+        int row = (int)p.id[s];
+        out.rt[row] = 0;
+        long tat = clock-p.at[s];
+        out.ct[row] = clock;
+        out.tat[row] = tat;
+        out.wt[row] = tat-p.bt[s]-p.blocked[s];
+    }
+}
@@ -0,0 +1,72 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+
+/* =====================================================================================
+// SwitchCost is what a CPU pays, in simulated time, to start running a different process
+// Every context switch costs a fixed overhead. On top of that, a process whose cache has
+//   gone cold runs no faster than it would have without a warmup penalty: it gets the full
+//   penalty the first time it runs and whenever it moves to another CPU, and otherwise a
+//   part of it that grows with the time since it last ran (half of the cache is gone after
+//   halfLife ticks away, three quarters after twice that, and so on).
+// A CPU that carries on with the process it was already running pays nothing. While it
+//   pays, the CPU is busy but the process makes no progress, and arrivals cannot preempt it.
+   ===================================================================================== */
+public class SwitchCost {
+    public static final SwitchCost NONE = new SwitchCost(0, 0, 0);  // switches are free
+    final long overhead;    // ticks every context switch costs
+    final long warmup;      // ticks a process with a cold cache loses refilling it
+    final long halfLife;    // ticks away from the CPU after which half the cache is cold
+
+    // Pre: passed an overhead, a warmup penalty and a half life, all >= 0 (a half life of 0
+    //        means the cache is always cold)
+    public SwitchCost(long overhead, long warmup, long halfLife){
+        if(overhead < 0 || warmup < 0 || halfLife < 0)
+            throw new IllegalArgumentException("Switch costs must be >= 0");
+        this.overhead = overhead;
+        this.warmup = warmup;
+        this.halfLife = halfLife;
+    }
+
+    // Pre: passed a cost config, "overhead" or "overhead:warmup:halfLife", e.g. "5:20:1000"
+    // Post: returns the cost it describes
+    //       throws IllegalArgumentException if it is not of that form
+    public static SwitchCost parse(String config){
+        String [] parts = config.split(":");
+        try{
+            if(parts.length == 1) return new SwitchCost(Long.parseLong(parts[0]), 0, 0);
+            if(parts.length == 3) return new SwitchCost(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        }catch(NumberFormatException ex){
+            throw new IllegalArgumentException("Bad parameter in switch cost: "+config);
+        }
+        throw new IllegalArgumentException("Switch cost must be overhead or overhead:warmup:halfLife, not "+config);
+    }
+
+    public boolean isFree(){ return overhead == 0 && warmup == 0; }
+
+    // Pre: passed whether the process's cache is cold (it never ran, or last ran on another
+    //        CPU) and the ticks since it last ran otherwise
+    // Post: returns the ticks the CPU spends switching to the process before it runs
+    public long cost(boolean cold, long away){
+        if(warmup == 0) return overhead;
+        if(cold || halfLife == 0) return overhead+warmup;
+        return overhead+Math.round(warmup*(1-Math.pow(0.5, (double)away/halfLife)));
+    }
+
+    @Override public String toString(){
+        return warmup == 0 ? Long.toString(overhead) : overhead+":"+warmup+":"+halfLife;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/* =====================================================================================
+// Converts a CSV job trace into the binary trace format read by TraceFile (a one-time step;
+//   every simulation after that maps the binary file instead of parsing text)
+//
+// Usage: java Analysis.TraceConverter <in.csv> <out.trace>
+//
+// Each line of the CSV is one job, as CsvStream reads them: arrival time, burst time and,
+//   optionally, priority (e.g. "1500,320,0"). Jobs must be in order of arrival (e.g.
+//   sort -t, -k1,1n first).
+   ===================================================================================== */
+public class TraceConverter {
+
+    public static void main(String [] args) throws Exception{
+        if(args.length != 2){
+            System.err.println("Usage: java Analysis.TraceConverter <in.csv> <out.trace>");
+            System.exit(2);
+        }
+        long n = convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("Wrote "+n+" records to "+args[1]);
+    }
+
+/* =====================================================================================
+// Pre:  passed the path of a CSV trace and the path of the binary trace to write
+// Post: writes the binary trace and returns the number of records in it
+//       throws IllegalArgumentException (naming the line) if a line cannot be converted,
+//         including a burst time too long for the trace format (over 2^31-1 ticks)
+   ===================================================================================== */
+    public static long convert(Path csv, Path trace) throws IOException{
+        try(BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+            TraceFile.Writer out = new TraceFile.Writer(trace)){
+            CsvStream jobs = new CsvStream(in, csv.toString());
+            for(; jobs.hasNext(); jobs.next()){
+                if(jobs.burst() > Integer.MAX_VALUE)
+                    throw new IllegalArgumentException(csv+" job "+jobs.id()+": burst time "+jobs.burst()+" does not fit in a trace");
+                out.add(jobs.arrival(), (int)jobs.burst(), jobs.priority());
+            }
+            return out.count();
+        }catch(UncheckedIOException ex){
+            throw ex.getCause();
+        }
+    }
+}
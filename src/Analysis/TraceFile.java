@@ -0,0 +1,154 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/* =====================================================================================
+// TraceFile reads a recorded workload stored in a compact binary trace file
+//
+// Format (all numbers little-endian):
+//   header, HEADER bytes:  int magic ("SCHT"), int version, long record count, then zeros
+//   records, RECORD bytes each, in order of arrival:
+//                          long arrival time, int burst time, int priority
+//
+// The file is memory-mapped, not read: a record is only touched when a scheduling
+//   algorithm asks for it, straight from the page cache and without being copied or parsed.
+//   A file is mapped in chunks of up to CHUNK records, since one mapping is limited to 2 GB,
+//   so a trace can hold any number of records.
+// Traces are written with TraceFile.Writer, or converted from CSV with TraceConverter.
+   ===================================================================================== */
+public class TraceFile implements Closeable {
+    public static final int MAGIC = 0x54484353;     // "SCHT" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final int HEADER = 32;            // bytes before the first record
+    public static final int RECORD = 16;            // bytes per record
+    static final int CHUNK = 1 << 26;               // records per mapping (1 GB)
+
+    final FileChannel channel;
+    final long count;                   // number of records
+    final MappedByteBuffer [] chunks;   // chunk c holds records c*CHUNK .. (c+1)*CHUNK-1
+
+/* =====================================================================================
+// Pre:  passed the path of a trace file
+// Post: maps the file; throws IOException if it is not a valid trace
+   ===================================================================================== */
+    public TraceFile(Path path) throws IOException{
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try{
+            ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while(head.hasRemaining() && channel.read(head) >= 0);
+            head.flip();
+            if(head.remaining() < HEADER || head.getInt() != MAGIC) throw new IOException(path+" is not a trace file");
+            int version = head.getInt();
+            if(version != VERSION) throw new IOException(path+" has unsupported trace version "+version);
+            count = head.getLong();
+            if(count < 0 || HEADER+count*RECORD > channel.size()) throw new IOException(path+" is truncated");
+            
+            chunks = new MappedByteBuffer[(int)((count+CHUNK-1)/CHUNK)];
+            for(int c=0; c<chunks.length; c++){
+                long first = (long)c*CHUNK, n = Math.min(CHUNK, count-first);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER+first*RECORD, n*RECORD);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }catch(IOException | RuntimeException ex){
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public long size(){ return count; }     // number of records
+
+    // Pre: passed a record number 0 <= i < size(); Post: returns that record's field
+    public long arrival(long i){ return chunks[(int)(i/CHUNK)].getLong((int)(i%CHUNK)*RECORD); }
+    public int burst(long i){ return chunks[(int)(i/CHUNK)].getInt((int)(i%CHUNK)*RECORD+8); }
+    public int priority(long i){ return chunks[(int)(i/CHUNK)].getInt((int)(i%CHUNK)*RECORD+12); }
+
+    // Post: returns a stream over the records, read straight from the mapping (the record
+    //         number is the ID); any number of streams can read the same file at once
+    public ProcessStream stream(){
+        return new ProcessStream(){
+            long i = 0;                         // next record
+            ByteBuffer chunk = count > 0 ? chunks[0] : null;
+            int off = 0;                        // offset of record i in chunk
+            @Override public boolean hasNext(){ return i < count; }
+            @Override public long arrival(){ return chunk.getLong(off); }
+            @Override public long burst(){ return chunk.getInt(off+8); }
+            @Override public int priority(){ return chunk.getInt(off+12); }
+            @Override public long id(){ return i; }
+            @Override public void next(){
+                i++;
+                off += RECORD;
+                if(off == CHUNK*RECORD && i < count){ chunk = chunks[(int)(i/CHUNK)]; off = 0; }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException{ channel.close(); }
+
+/* =====================================================================================
+// Writer writes a trace file one record at a time, through a fixed-size buffer
+// The record count in the header is filled in when the writer is closed.
+   ===================================================================================== */
+    public static class Writer implements Closeable {
+        final FileChannel out;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long count = 0;         // records written so far
+        long lastArrival = 0;   // arrival time of the last record
+
+        // Pre: passed the path to write; Post: creates (or replaces) the file
+        public Writer(Path path) throws IOException{
+            out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+            buf.put(new byte[HEADER]);  // the header is written last
+        }
+
+        // Pre: passed a record, arriving no earlier than the previous one, with burst > 0
+        // Post: the record is added to the trace
+        public void add(long arrival, int burst, int priority) throws IOException{
+            if(arrival < lastArrival)   // (lastArrival starts at 0, so this also rejects negative times)
+                throw new IllegalArgumentException("Record "+count+" arrives at "+arrival+", before the previous record");
+            if(burst <= 0) throw new IllegalArgumentException("Record "+count+" has burst time "+burst);
+            if(buf.remaining() < RECORD) flush();
+            buf.putLong(arrival).putInt(burst).putInt(priority);
+            lastArrival = arrival;
+            count++;
+        }
+
+        public long count(){ return count; }
+
+        private void flush() throws IOException{
+            buf.flip();
+            while(buf.hasRemaining()) out.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException{
+            try{
+                flush();
+                ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+                head.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+                while(head.hasRemaining()) out.write(head, head.position());
+            }finally{
+                out.close();
+            }
+        }
+    }
+}
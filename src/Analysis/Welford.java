@@ -0,0 +1,73 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+
+/* =====================================================================================
+// Welford keeps the running mean and variance of a series of values (e.g. one metric over
+//   the epochs), updated with Welford's method, so neither the values nor their sum of
+//   squares (which loses precision) have to be kept
+// From them it gives a 95% confidence interval for the mean, using Student's t
+//   distribution since there are often only a few values.
+   ===================================================================================== */
+public class Welford {
+    // t value for a 95% interval with 1 to 30 degrees of freedom
+    static final double [] t95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+         2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+         2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+    long n = 0;         // number of values
+    double mean = 0;    // mean of the values
+    double m2 = 0;      // sum of the squared differences from the mean
+
+    // Post: x is counted
+    public void add(double x){
+        n++;
+        double d = x-mean;
+        mean += d/n;
+        m2 += d*(x-mean);
+    }
+
+    public long count(){ return n; }
+    public double mean(){ return mean; }
+    public double variance(){ return n < 2 ? 0 : m2/(n-1); }   // sample variance
+
+    // Post: returns the half width of the 95% confidence interval for the mean (infinite
+    //         with fewer than 2 values)
+    public double halfWidth(){
+        if(n < 2) return Double.POSITIVE_INFINITY;
+        return t(n-1)*Math.sqrt(variance()/n);
+    }
+
+    // Post: returns the half width relative to the mean (0 if every value was 0)
+    public double relativeWidth(){
+        double h = halfWidth();
+        if(mean == 0) return h == 0 ? 0 : Double.POSITIVE_INFINITY;
+        return h/Math.abs(mean);
+    }
+
+    // Pre: passed degrees of freedom > 0; Post: returns the t value for a 95% interval
+    //        (past the table, the Cornish-Fisher expansion around the normal value)
+    static double t(long df){
+        if(df <= t95.length) return t95[(int)df-1];
+        double z = 1.959964, z3 = z*z*z, z5 = z3*z*z;
+        return z+(z3+z)/(4*df)+(5*z5+16*z3+3*z)/(96.0*df*df);
+    }
+
+    // Post: returns the interval as "mean +/- half width", e.g. for printing
+    public String interval(){
+        return String.format("%.4g +/- %.3g (%.2f%%)", mean, halfWidth(), 100*relativeWidth());
+    }
+}
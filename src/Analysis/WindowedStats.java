@@ -0,0 +1,112 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.io.PrintStream;
+
+/* =====================================================================================
+// WindowedStats is a RunStats that also reports on a sliding window of a run as it goes
+// Every step ticks of simulated time, it prints the throughput, utilization and waiting
+//   time percentiles of the last window ticks (window is a whole number of steps).
+// The window is a ring of buckets, one per step, each with the completions, idle time and
+//   waiting times of its step; the bucket that falls out of the window is cleared and
+//   reused for the next step. So memory stays the same however long the run lasts.
+// Every bucket has a full LatencyHistogram (about 58 KB), so a window has at most maxSteps
+//   steps (about 15 MB).
+// It relies on the simulator reporting completions and idle time in order of time, as
+//   Simulator and MultiCoreSimulator do.
+   ===================================================================================== */
+public class WindowedStats extends RunStats {
+    public static final int maxSteps = 256;     // most steps a window may have
+    final long step;                // ticks between reports (and width of a bucket)
+    final int cpus;                 // CPUs the run is on, for utilization
+    final PrintStream out;          // where the reports go
+    final long [] done;             // processes completed in each bucket
+    final long [] idleIn;           // idle time (summed over the CPUs) in each bucket
+    final LatencyHistogram [] waits;    // waiting times of the processes completed in each bucket
+    final LatencyHistogram all = new LatencyHistogram();    // waiting times of the whole window
+    int cur = 0;                    // bucket of the current step
+    int filled = 1;                 // buckets in use (less than all of them at the start)
+    long start = 0;                 // time the current step started
+
+    // Pre: passed window and step > 0, with window a multiple of step and at most maxSteps
+    //        steps, the number of CPUs the run is on and where to print the reports
+    public WindowedStats(long window, long step, int cpus, PrintStream out){
+        if(step <= 0 || window <= 0 || window%step != 0)
+            throw new IllegalArgumentException("Window must be a positive multiple of the step");
+        if(window/step > maxSteps)
+            throw new IllegalArgumentException("Window has "+window/step+" steps, more than "+maxSteps+" (make --every larger)");
+        int n = (int)(window/step);
+        this.step = step;
+        this.cpus = cpus;
+        this.out = out;
+        done = new long[n];
+        idleIn = new long[n];
+        waits = new LatencyHistogram[n];
+        for(int b=0; b<n; b++) waits[b] = new LatencyHistogram();
+    }
+
+    @Override public void complete(long at, long bt, long firstRun, long ct, long blocked){
+        super.complete(at, bt, firstRun, ct, blocked);
+        advance(ct);
+        done[cur]++;
+        waits[cur].record(ct-at-bt-blocked);
+    }
+
+    @Override public void idled(long from, long to, int cpus){
+        while(from < to){   // split over the steps it spans
+            advance(from);
+            long end = Math.min(to, start+step);
+            idleIn[cur] += (end-from)*cpus;
+            from = end;
+        }
+    }
+
+    @Override public void finish(long idle, long total){
+        super.finish(idle, total);
+        advance(total);
+        if(total > start) report(total);    // the last, partial step
+    }
+
+    // Post: every step that ended by time t is reported, and the current step holds t
+    void advance(long t){
+        while(t >= start+step){
+            report(start+step);
+            start += step;
+            cur = (cur+1)%done.length;
+            filled = Math.min(filled+1, done.length);
+            done[cur] = idleIn[cur] = 0;
+            waits[cur].clear();
+        }
+    }
+
+    // Post: prints the window that ends at time end (in the current step)
+    void report(long end){
+        long completed = 0, idle = 0;
+        all.clear();
+        for(int i=0; i<filled; i++){
+            int b = (cur-i+done.length)%done.length;
+            completed += done[b];
+            idle += idleIn[b];
+            all.merge(waits[b]);
+        }
+        long length = end-(start-(filled-1)*step);  // the window is shorter at the start
+        out.println("[t="+end+"] Completed: "+completed
+                    +"\tThroughput (per 1000 ticks): "+String.format("%.3f", 1000.0*completed/length)
+                    +"\tUtilization: "+String.format("%.3f", 1-(double)idle/(length*cpus))
+                    +"\tWait p50/p90/p99/p99.9: "+all.summary());
+        out.flush();    // the reports are meant to be watched as they come
+    }
+}
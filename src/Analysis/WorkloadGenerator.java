@@ -0,0 +1,216 @@
+/*
+Copyright 2022 Joshua Henderson
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package Analysis;
+import java.util.*;
+
+/* =====================================================================================
+// WorkloadGenerator is a ProcessStream that makes random processes on demand, already in
+//   order of arrival, so it uses the same small amount of memory for any number of processes
+// Arrivals are one of
+//   - poisson:  a Poisson process, gaps between arrivals exponential with mean meanGap
+//   - uniform:  uniform in [0, maxArrival), like makeNewProcess, but produced already sorted:
+//                 each arrival is the next order statistic of count uniform samples, drawn
+//                 from the previous one (u' = u + (1-u)(1-V^(1/k)) with k samples left and V
+//                 uniform in (0,1])
+//   - mmpp:     bursty, a Markov-modulated Poisson process: a Poisson process that switches
+//                 between a busy and a quiet rate (ratio times faster) after exponential
+//                 stays of mean stay, with meanGap between arrivals on average
+//   - diurnal:  a Poisson process whose rate follows a sine wave of the given period, from
+//                 (1-amplitude) to (1+amplitude) times the mean rate 1/meanGap
+// Burst times are one of
+//   - uniform:   uniform in [min, max), like makeNewProcess
+//   - pareto:    heavy tailed, min/U^(1/alpha) for U uniform in (0,1], cut off at max (most
+//                  jobs are short, but a few huge ones hold much of the work)
+//   - lognormal: median*e^(sigma*Z) for Z standard normal (at least 1)
+// A share of the processes can also wait for I/O: each one picks its CPU time between waits
+//   and the length of its waits, exponential with the given means (at least 1), and
+//   alternates between the two until its burst is done (see ProcessStream).
+// Everything is drawn from SplittableRandom, seeded from the seed: arrivals and bursts from
+//   one stream, in the same order as before, and I/O from a stream split off a second copy
+//   of it, so turning I/O on keeps the same arrivals and bursts. Every epoch's seed is split
+//   off a root seed and every run gets its own generator, so any number of them make their
+//   processes in parallel, and the same parameters and seed always give the same processes.
+   ===================================================================================== */
+public class WorkloadGenerator implements ProcessStream {
+    static final String [] patterns = {"poisson", "uniform", "mmpp", "diurnal"};   // arrival patterns
+    static final String [] sizes = {"uniform", "pareto", "lognormal"};             // burst distributions
+
+    final long count;               // number of processes to make
+    final int pattern;              // index of the arrival pattern in patterns
+    final double meanGap;           // mean time between arrivals (all but uniform)
+    final double [] arrive;         // parameters of the pattern (see of)
+    final int size;                 // index of the burst distribution in sizes
+    final double [] burstOf;        // parameters of the distribution (see of)
+    final double ioShare, ioEvery, ioWait;  // share of processes waiting for I/O, mean CPU time
+                                            //   between waits, mean length of a wait
+    final SplittableRandom rand;    // for randomly generating arrivals and bursts
+    final SplittableRandom ioRand;  // for randomly generating I/O, null if there is none
+    long made = 0;                  // processes handed out so far
+    double u = 0;                   // exact arrival time, or for uniform last order statistic in [0, 1)
+    boolean busy = false;           // mmpp: in the busy state
+    double switchAt;                // mmpp: time the state next switches
+    long arrival, burst;            // the next process
+    long every, wait;               // its I/O: CPU time between waits (0 if none), length of a wait
+
+    private WorkloadGenerator(long count, int pattern, double meanGap, double [] arrive, int size, double [] burstOf,
+                              double ioShare, double ioEvery, double ioWait, long seed){
+        if(count < 0) throw new IllegalArgumentException("Number of processes must be >= 0");
+        if(pattern != 1 && !(meanGap > 0)) throw new IllegalArgumentException("Mean gap must be > 0");
+        this.count = count;
+        this.pattern = pattern;
+        this.meanGap = meanGap;
+        this.arrive = arrive;
+        this.size = size;
+        this.burstOf = burstOf;
+        this.ioShare = ioShare;
+        this.ioEvery = ioEvery;
+        this.ioWait = ioWait;
+        rand = new SplittableRandom(seed);
+        ioRand = ioShare > 0 ? new SplittableRandom(seed).split() : null;
+        if(pattern == 2) switchAt = exponential(arrive[1]);
+        make();
+    }
+
+/* =====================================================================================
+// Pre:  passed count >= 0, meanGap > 0, maxBurst > minBurst >= 0 and a seed
+// Post: returns a stream of count processes arriving as a Poisson process with meanGap
+//         ticks between arrivals on average
+   ===================================================================================== */
+    public static WorkloadGenerator poisson(long count, double meanGap, int minBurst, int maxBurst, long seed){
+        return new WorkloadGenerator(count, 0, meanGap, null, 0, flat(minBurst, maxBurst), 0, 0, 0, seed);
+    }
+
+/* =====================================================================================
+// Pre:  passed count >= 0, maxArrival > 0, maxBurst > minBurst >= 0 and a seed
+// Post: returns a stream of count processes with arrivals uniform in [0, maxArrival)
+   ===================================================================================== */
+    public static WorkloadGenerator uniform(long count, long maxArrival, int minBurst, int maxBurst, long seed){
+        return new WorkloadGenerator(count, 1, 0, new double[]{maxArrival}, 0, flat(minBurst, maxBurst), 0, 0, 0, seed);
+    }
+
+/* =====================================================================================
+// Pre:  passed count >= 0, the mean gap between arrivals > 0, and configs of the arrivals,
+//         bursts and I/O:
+//           arrivals: "poisson", "uniform:maxArrival", "mmpp:ratio:stay" or
+//                     "diurnal:period:amplitude" (ratio >= 1, 0 <= amplitude <= 1)
+//           bursts:   "uniform:min:max", "pareto:alpha:min:max" or "lognormal:median:sigma"
+//           io:       "none" or "share:every:wait" (0 <= share <= 1)
+//         e.g. "mmpp:10:50000", "pareto:1.5:250:500000", "0.3:200:2000"; and a seed
+// Post: returns a stream of count processes made that way
+//       throws IllegalArgumentException if a config is not of that form
+   ===================================================================================== */
+    public static WorkloadGenerator of(long count, double meanGap, String arrivals, String bursts, String io, long seed){
+        String [] a = arrivals.split(":"), b = bursts.split(":"), i = io.split(":");
+        int pattern = Arrays.asList(patterns).indexOf(a[0]), size = Arrays.asList(sizes).indexOf(b[0]);
+        double [] ap = numbers(a, 1, arrivals), bp = numbers(b, 1, bursts);
+        if(pattern < 0 || ap.length != new int[]{0, 1, 2, 2}[pattern] || (pattern == 1 && !(ap[0] >= 1))
+           || (pattern == 2 && !(ap[0] >= 1 && ap[1] > 0)) || (pattern == 3 && !(ap[0] > 0 && ap[1] >= 0 && ap[1] <= 1)))
+            throw new IllegalArgumentException("Arrivals must be poisson, uniform:maxArrival, mmpp:ratio:stay or "
+                                               +"diurnal:period:amplitude, not "+arrivals);
+        if(size < 0 || bp.length != new int[]{2, 3, 2}[size] || (size == 0 && !(bp[1] > bp[0] && bp[0] >= 0))
+           || (size == 1 && !(bp[0] > 0 && bp[1] >= 1 && bp[2] >= bp[1])) || (size == 2 && !(bp[0] >= 1 && bp[1] >= 0)))
+            throw new IllegalArgumentException("Bursts must be uniform:min:max, pareto:alpha:min:max or "
+                                               +"lognormal:median:sigma, not "+bursts);
+        double [] ip = io.equals("none") ? new double[3] : numbers(i, 0, io);
+        if(ip.length != 3 || !(ip[0] >= 0 && ip[0] <= 1) || (ip[0] > 0 && !(ip[1] >= 1 && ip[2] >= 1)))
+            throw new IllegalArgumentException("I/O must be none or share:every:wait, not "+io);
+        if(size == 0) bp = flat((int)bp[0], (int)bp[1]);
+        return new WorkloadGenerator(count, pattern, meanGap, ap, size, bp, ip[0], ip[1], ip[2], seed);
+    }
+
+    // the parameters of a config (its parts from the first given on), or throw if one is not
+    //   a number
+    private static double [] numbers(String [] parts, int first, String config){
+        double [] r = new double[parts.length-first];
+        try{
+            for(int i=first; i<parts.length; i++) r[i-first] = Double.parseDouble(parts[i]);
+        }catch(NumberFormatException ex){
+            throw new IllegalArgumentException("Bad parameter in workload config: "+config);
+        }
+        return r;
+    }
+
+    // the parameters of uniform bursts in [minBurst, maxBurst)
+    private static double [] flat(int minBurst, int maxBurst){
+        if(maxBurst <= minBurst || minBurst < 0) throw new IllegalArgumentException("Need maxBurst > minBurst >= 0");
+        return new double[]{minBurst, maxBurst};
+    }
+
+    // make the process with index made, if there is one
+    private void make(){
+        if(made >= count) return;
+        burst = nextBurst();
+        arrival = nextArrival();
+        if(ioRand != null && ioRand.nextDouble() < ioShare){
+            every = Math.max(1, Math.round(-ioEvery*Math.log(1-ioRand.nextDouble())));
+            wait = Math.max(1, Math.round(-ioWait*Math.log(1-ioRand.nextDouble())));
+        }else every = wait = 0;
+    }
+
+    // draw the burst time of the next process
+    private long nextBurst(){
+        switch(size){
+            case 1:     // pareto
+                double v = burstOf[1]/Math.pow(1-rand.nextDouble(), 1/burstOf[0]);
+                return (long)Math.ceil(Math.min(v, burstOf[2]));
+            case 2:     // lognormal
+                return Math.max(1, Math.round(burstOf[0]*Math.exp(burstOf[1]*rand.nextGaussian())));
+            default:    // uniform; Get a random burst time
+                int min = (int)burstOf[0];
+                return rand.nextInt((int)burstOf[1]-min)+min;
+        }
+    }
+
+    // draw the arrival time of the next process
+    private long nextArrival(){
+        switch(pattern){
+            case 1:     // uniform
+                long left = count-made, maxArrival = (long)arrive[0];
+                u += (1-u)*(1-Math.pow(1-rand.nextDouble(), 1.0/left));
+                return Math.min((long)(u*maxArrival), maxArrival-1);
+            case 2:     // mmpp: the quiet rate is 2/(1+ratio) of the mean, the busy rate ratio times that
+                while(true){
+                    double gap = meanGap*(1+arrive[0])/2/(busy ? arrive[0] : 1);
+                    double next = u+exponential(gap);
+                    if(next < switchAt){ u = next; break; }
+                    u = switchAt;       // no arrival before the switch; start afresh from it
+                    busy = !busy;
+                    switchAt = u+exponential(arrive[1]);
+                }
+                return (long)u;
+            case 3:     // diurnal: candidates at the peak rate, kept in proportion to the rate then
+                double peak = 1+arrive[1];
+                do{
+                    u += exponential(meanGap/peak);
+                }while(rand.nextDouble()*peak >= 1+arrive[1]*Math.sin(2*Math.PI*u/arrive[0]));
+                return (long)u;
+            default:    // poisson
+                u += exponential(meanGap);
+                return (long)u;
+        }
+    }
+
+    // an exponential draw with the given mean
+    private double exponential(double mean){ return -mean*Math.log(1-rand.nextDouble()); }
+
+    @Override public boolean hasNext(){ return made < count; }
+    @Override public long arrival(){ return arrival; }
+    @Override public long burst(){ return burst; }
+    @Override public long id(){ return made; }
+    @Override public long ioEvery(){ return every; }
+    @Override public long ioWait(){ return wait; }
+    @Override public void next(){ made++; make(); }
+}